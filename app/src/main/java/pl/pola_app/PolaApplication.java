@@ -2,30 +2,26 @@ package pl.pola_app;
 
 import android.app.Application;
 import android.content.Context;
+import android.os.StrictMode;
 import android.util.Log;
 
 import com.crashlytics.android.Crashlytics;
-import com.squareup.okhttp.OkHttpClient;
-
-import java.util.concurrent.TimeUnit;
 
 import butterknife.ButterKnife;
 import io.fabric.sdk.android.Fabric;
-import pl.pola_app.helpers.Utils;
 import pl.pola_app.internal.di.PolaComponent;
-import retrofit.GsonConverterFactory;
-import retrofit.Retrofit;
 import timber.log.Timber;
 
 public class PolaApplication extends Application {
 
     private PolaComponent component;
-    public static Retrofit retrofit;
 
     @Override public void onCreate() {
         super.onCreate();
 
         component = PolaComponent.Initializer.init(this);
+        component.sessionManager().load();
+        component.decoderEngineSelector().load();
         if(BuildConfig.USE_CRASHLYTICS) {
             Fabric.with(this, new Crashlytics());
         }
@@ -33,19 +29,18 @@ public class PolaApplication extends Application {
 
         if (BuildConfig.DEBUG) {
             Timber.plant(new Timber.DebugTree());
+            //nothing on the scan path should touch the disk or network on the main thread
+            StrictMode.setThreadPolicy(new StrictMode.ThreadPolicy.Builder()
+                    .detectDiskReads()
+                    .detectDiskWrites()
+                    .detectNetwork()
+                    .penaltyLog()
+                    .build());
         } else {
             Timber.plant(new CrashReportingTree());
         }
 
-        OkHttpClient client = new OkHttpClient();
-        client.setConnectTimeout(Utils.TIMEOUT_SECONDS, TimeUnit.SECONDS);
-        client.setReadTimeout(Utils.TIMEOUT_SECONDS, TimeUnit.SECONDS);
-
-        retrofit = new Retrofit.Builder()
-                .baseUrl(this.getResources().getString(R.string.pola_api_url))
-                .addConverterFactory(GsonConverterFactory.create())
-                .client(client)
-                .build();
+        component.snapshotSync().syncIfNeeded();
     }
 
     public static PolaComponent component(Context context) {
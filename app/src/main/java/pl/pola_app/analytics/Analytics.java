@@ -0,0 +1,94 @@
+package pl.pola_app.analytics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import timber.log.Timber;
+
+/**
+ * Queue of analytics events written out by a background thread in batches.
+ * <p/>
+ * {@link #log(AnalyticsEvent)} never blocks: when the queue is full the event is dropped and counted.
+ * The writer waits up to {@link #LINGER_MILLIS} to fill a batch, {@link #flush()} sends what's queued right away.
+ */
+public class Analytics {
+    static final int CAPACITY = 256;
+    static final int MAX_BATCH_SIZE = 32;
+    static final long LINGER_MILLIS = TimeUnit.SECONDS.toMillis(5);
+
+    //marks the point up to which the queue should be sent without waiting
+    private static final AnalyticsEvent FLUSH = AnalyticsEvent.custom("flush");
+
+    private final AnalyticsSink sink;
+    private final BlockingQueue<AnalyticsEvent> queue = new ArrayBlockingQueue<>(CAPACITY);
+    private final AtomicInteger droppedCount = new AtomicInteger();
+    private final AtomicInteger sentCount = new AtomicInteger();
+
+    public Analytics(AnalyticsSink sink) {
+        this.sink = sink;
+        Thread writer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                write();
+            }
+        }, "Analytics");
+        writer.setDaemon(true);
+        writer.setPriority(Thread.MIN_PRIORITY);
+        writer.start();
+    }
+
+    public void log(AnalyticsEvent event) {
+        if (!queue.offer(event)) {
+            int dropped = droppedCount.incrementAndGet();
+            if (dropped % CAPACITY == 1) {
+                Timber.w("Analytics queue full, " + dropped + " events dropped so far");
+            }
+        }
+    }
+
+    public void flush() {
+        queue.offer(FLUSH);
+    }
+
+    public int getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    public int getSentCount() {
+        return sentCount.get();
+    }
+
+    private void write() {
+        List<AnalyticsEvent> batch = new ArrayList<>(MAX_BATCH_SIZE);
+        while (true) {
+            try {
+                AnalyticsEvent event = queue.take();
+                long deadline = System.currentTimeMillis() + LINGER_MILLIS;
+                while (event != null && event != FLUSH) {
+                    batch.add(event);
+                    if (batch.size() >= MAX_BATCH_SIZE) {
+                        break;
+                    }
+                    long remaining = deadline - System.currentTimeMillis();
+                    event = remaining > 0 ? queue.poll(remaining, TimeUnit.MILLISECONDS) : queue.poll();
+                }
+            } catch (InterruptedException e) {
+                return;
+            }
+
+            if (!batch.isEmpty()) {
+                try {
+                    sink.send(batch);
+                    sentCount.addAndGet(batch.size());
+                } catch (RuntimeException e) {
+                    Timber.w(e, "Analytics sink failed");
+                }
+                batch.clear();
+            }
+        }
+    }
+}
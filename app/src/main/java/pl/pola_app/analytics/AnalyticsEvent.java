@@ -0,0 +1,64 @@
+package pl.pola_app.analytics;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Plain description of an analytics event, turned into the real thing by an {@link AnalyticsSink}
+ * on the {@link Analytics} writer thread.
+ */
+public class AnalyticsEvent {
+    public enum Type {
+        CUSTOM, SEARCH, CONTENT_VIEW, LEVEL_START, LEVEL_END
+    }
+
+    public final Type type;
+    //event name, search query, content name or level name depending on the type
+    public final String name;
+    public String contentType;
+    public String contentId;
+    public final Map<String, Object> attributes = new LinkedHashMap<>(4);
+
+    private AnalyticsEvent(Type type, String name) {
+        this.type = type;
+        this.name = name;
+    }
+
+    public static AnalyticsEvent custom(String name) {
+        return new AnalyticsEvent(Type.CUSTOM, name);
+    }
+
+    public static AnalyticsEvent search(String query) {
+        return new AnalyticsEvent(Type.SEARCH, query);
+    }
+
+    public static AnalyticsEvent contentView(String contentName, String contentType, String contentId) {
+        AnalyticsEvent event = new AnalyticsEvent(Type.CONTENT_VIEW, contentName);
+        event.contentType = contentType;
+        event.contentId = contentId;
+        return event;
+    }
+
+    public static AnalyticsEvent levelStart(String levelName) {
+        return new AnalyticsEvent(Type.LEVEL_START, levelName);
+    }
+
+    public static AnalyticsEvent levelEnd(String levelName) {
+        return new AnalyticsEvent(Type.LEVEL_END, levelName);
+    }
+
+    public AnalyticsEvent put(String key, String value) {
+        attributes.put(key, value);
+        return this;
+    }
+
+    public AnalyticsEvent put(String key, Number value) {
+        attributes.put(key, value);
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return type + " " + name + " " + attributes;
+    }
+}
@@ -0,0 +1,10 @@
+package pl.pola_app.analytics;
+
+import java.util.List;
+
+public interface AnalyticsSink {
+    /**
+     * Called on the {@link Analytics} writer thread with events in the order they were logged.
+     */
+    void send(List<AnalyticsEvent> events);
+}
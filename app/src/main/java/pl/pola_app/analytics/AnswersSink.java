@@ -0,0 +1,63 @@
+package pl.pola_app.analytics;
+
+import com.crashlytics.android.answers.Answers;
+import com.crashlytics.android.answers.AnswersEvent;
+import com.crashlytics.android.answers.ContentViewEvent;
+import com.crashlytics.android.answers.CustomEvent;
+import com.crashlytics.android.answers.LevelEndEvent;
+import com.crashlytics.android.answers.LevelStartEvent;
+import com.crashlytics.android.answers.SearchEvent;
+
+import java.util.List;
+import java.util.Map;
+
+import timber.log.Timber;
+
+public class AnswersSink implements AnalyticsSink {
+
+    @Override
+    public void send(List<AnalyticsEvent> events) {
+        Answers answers = Answers.getInstance();
+        for (AnalyticsEvent event : events) {
+            try {
+                switch (event.type) {
+                    case CUSTOM:
+                        answers.logCustom(withAttributes(new CustomEvent(event.name), event));
+                        break;
+                    case SEARCH:
+                        answers.logSearch(withAttributes(new SearchEvent().putQuery(event.name), event));
+                        break;
+                    case CONTENT_VIEW:
+                        ContentViewEvent contentViewEvent = new ContentViewEvent()
+                                .putContentName(event.name)
+                                .putContentType(event.contentType);
+                        if (event.contentId != null) {
+                            contentViewEvent.putContentId(event.contentId);
+                        }
+                        answers.logContentView(withAttributes(contentViewEvent, event));
+                        break;
+                    case LEVEL_START:
+                        answers.logLevelStart(withAttributes(new LevelStartEvent().putLevelName(event.name), event));
+                        break;
+                    case LEVEL_END:
+                        answers.logLevelEnd(withAttributes(new LevelEndEvent().putLevelName(event.name), event));
+                        break;
+                }
+            } catch (Exception e) {
+                Timber.w(e, "Can't log " + event);
+            }
+        }
+    }
+
+    private static <T extends AnswersEvent> T withAttributes(T answersEvent, AnalyticsEvent event) {
+        for (Map.Entry<String, Object> attribute : event.attributes.entrySet()) {
+            Object value = attribute.getValue();
+            if (value instanceof Number) {
+                answersEvent.putCustomAttribute(attribute.getKey(), (Number) value);
+            } else {
+                answersEvent.putCustomAttribute(attribute.getKey(), String.valueOf(value));
+            }
+        }
+        return answersEvent;
+    }
+}
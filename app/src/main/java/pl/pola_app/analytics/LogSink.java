@@ -0,0 +1,18 @@
+package pl.pola_app.analytics;
+
+import java.util.List;
+
+import timber.log.Timber;
+
+/**
+ * Used when Crashlytics is off, only logs what would be sent.
+ */
+public class LogSink implements AnalyticsSink {
+
+    @Override
+    public void send(List<AnalyticsEvent> events) {
+        for (AnalyticsEvent event : events) {
+            Timber.v("Analytics: " + event);
+        }
+    }
+}
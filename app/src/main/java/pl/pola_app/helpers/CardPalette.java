@@ -0,0 +1,60 @@
+package pl.pola_app.helpers;
+
+import android.content.res.Configuration;
+import android.content.res.Resources;
+
+import pl.pola_app.R;
+import pl.pola_app.model.Product;
+
+/**
+ * Card colors resolved from resources once per configuration, so binding a card only indexes arrays.
+ * Use from the main thread.
+ */
+public final class CardPalette {
+    private static CardPalette current;
+    private static Configuration currentConfiguration;
+
+    private final int[] cardBackgrounds = new int[Product.CardType.values().length];
+    private final int[] scoreBackgrounds = new int[Product.CardType.values().length];
+    private final int[] reportButtonTexts = new int[Product.ReportButtonType.values().length];
+    private final int redReportButtonBackground;
+
+    @SuppressWarnings("deprecation")
+    private CardPalette(Resources resources) {
+        cardBackgrounds[Product.CardType.WHITE.ordinal()] = resources.getColor(R.color.card_type_white_bk);
+        cardBackgrounds[Product.CardType.GREY.ordinal()] = resources.getColor(R.color.card_type_grey_bk);
+        scoreBackgrounds[Product.CardType.WHITE.ordinal()] = resources.getColor(R.color.card_type_white_score_bk);
+        scoreBackgrounds[Product.CardType.GREY.ordinal()] = resources.getColor(R.color.card_type_grey_score_bk);
+        reportButtonTexts[Product.ReportButtonType.WHITE.ordinal()] = resources.getColor(R.color.card_type_white_report_bt_text);
+        reportButtonTexts[Product.ReportButtonType.RED.ordinal()] = resources.getColor(R.color.card_type_red_report_bt_text);
+        redReportButtonBackground = resources.getColor(R.color.card_type_red_report_bt_bk);
+    }
+
+    public static CardPalette of(Resources resources) {
+        Configuration configuration = resources.getConfiguration();
+        if (current == null || !configuration.equals(currentConfiguration)) {
+            current = new CardPalette(resources);
+            currentConfiguration = new Configuration(configuration);
+        }
+        return current;
+    }
+
+    public int cardBackground(Product.CardType cardType) {
+        return cardBackgrounds[cardType.ordinal()];
+    }
+
+    public int scoreBackground(Product.CardType cardType) {
+        return scoreBackgrounds[cardType.ordinal()];
+    }
+
+    public int reportButtonText(Product.ReportButtonType reportButtonType) {
+        return reportButtonTexts[reportButtonType.ordinal()];
+    }
+
+    /**
+     * White report buttons use the button_border drawable instead.
+     */
+    public int redReportButtonBackground() {
+        return redReportButtonBackground;
+    }
+}
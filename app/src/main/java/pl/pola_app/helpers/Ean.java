@@ -0,0 +1,41 @@
+package pl.pola_app.helpers;
+
+public final class Ean {
+
+    private Ean() {
+    }
+
+    /**
+     * @return true for EAN-8 and EAN-13 codes with a correct check digit
+     */
+    public static boolean isValid(String code) {
+        if (code == null || (code.length() != 8 && code.length() != 13)) {
+            return false;
+        }
+        int sum = 0;
+        //weights alternate 3, 1, 3... starting from the digit next to the check digit
+        for (int i = code.length() - 2, weight = 3; i >= 0; i--, weight = 4 - weight) {
+            char c = code.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+            sum += (c - '0') * weight;
+        }
+        char check = code.charAt(code.length() - 1);
+        return check >= '0' && check <= '9' && (10 - sum % 10) % 10 == check - '0';
+    }
+
+    /**
+     * @return the code without leading zeros, so that UPC-A, EAN-13 and zero padded forms of one product compare equal
+     */
+    public static String normalize(String code) {
+        if (code == null) {
+            return null;
+        }
+        int start = 0;
+        while (start < code.length() - 1 && code.charAt(start) == '0') {
+            start++;
+        }
+        return code.substring(start);
+    }
+}
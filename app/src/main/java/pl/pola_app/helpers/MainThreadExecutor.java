@@ -0,0 +1,19 @@
+package pl.pola_app.helpers;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.concurrent.Executor;
+
+/**
+ * Runs tasks on the main thread. Retrofit delivers its callbacks through it, and classes answering on the same
+ * thread use {@link retrofit.Retrofit#callbackExecutor()}, so tests can pass an executor of their own.
+ */
+public class MainThreadExecutor implements Executor {
+    private final Handler handler = new Handler(Looper.getMainLooper());
+
+    @Override
+    public void execute(Runnable command) {
+        handler.post(command);
+    }
+}
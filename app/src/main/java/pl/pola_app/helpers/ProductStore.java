@@ -0,0 +1,214 @@
+package pl.pola_app.helpers;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import pl.pola_app.model.Product;
+
+/**
+ * Products list ordered from the most recently scanned, indexed by barcode.
+ * <p/>
+ * Every product sits in a numbered slot, newer products in higher slots, and a Fenwick tree counts the taken slots.
+ * That gives constant time lookups by code and logarithmic time moves to the front, position lookups and removals,
+ * instead of shifting the whole list on every rescan. Free slots are kept on both ends, so pages of older products
+ * can be appended as cheaply as new scans are added on top. Slots freed by moves are reclaimed by an occasional
+ * compaction.
+ */
+public class ProductStore {
+    private static final int MIN_CAPACITY = 16;
+
+    private final Map<String, Integer> slotsByCode = new HashMap<>();
+    private Product[] items;
+    private String[] codes;
+    private int[] tree;
+    private int first;
+    private int next;
+    private int size;
+
+    public ProductStore() {
+        allocate(MIN_CAPACITY * 2);
+        first = MIN_CAPACITY;
+        next = MIN_CAPACITY;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean contains(String code) {
+        return code != null && slotsByCode.containsKey(code);
+    }
+
+    public Product get(String code) {
+        Integer slot = code == null ? null : slotsByCode.get(code);
+        return slot == null ? null : items[slot];
+    }
+
+    public Product get(int position) {
+        return items[slotAt(position)];
+    }
+
+    public String codeAt(int position) {
+        return codes[slotAt(position)];
+    }
+
+    /**
+     * @return position of the product, -1 if there is none with this code
+     */
+    public int indexOf(String code) {
+        Integer slot = code == null ? null : slotsByCode.get(code);
+        return slot == null ? -1 : size - prefixCount(slot);
+    }
+
+    /**
+     * Adds the product on top, replacing the one stored under the same code if there was any.
+     */
+    public void addFirst(String code, Product item) {
+        remove(code);
+        if (next == items.length) {
+            compact();
+        }
+        put(next++, code, item);
+    }
+
+    /**
+     * Adds the product at the bottom, unless there already is one with the same code.
+     *
+     * @return false if the product was already there
+     */
+    public boolean addLast(String code, Product item) {
+        if (code == null || contains(code)) {
+            return false;
+        }
+        if (first == 0) {
+            compact();
+        }
+        put(--first, code, item);
+        return true;
+    }
+
+    /**
+     * Replaces the product without moving it.
+     *
+     * @return its position, -1 if there is no product with this code
+     */
+    public int set(String code, Product item) {
+        Integer slot = code == null ? null : slotsByCode.get(code);
+        if (slot == null) {
+            return -1;
+        }
+        items[slot] = item;
+        return size - prefixCount(slot);
+    }
+
+    /**
+     * @return position the product was at before it was moved on top, -1 if there is no product with this code
+     */
+    public int moveToFront(String code) {
+        Integer slot = code == null ? null : slotsByCode.get(code);
+        if (slot == null) {
+            return -1;
+        }
+        int position = size - prefixCount(slot);
+        if (position > 0) {
+            Product item = items[slot];
+            remove(code);
+            if (next == items.length) {
+                compact();
+            }
+            put(next++, code, item);
+        }
+        return position;
+    }
+
+    /**
+     * @return position the product was removed from, -1 if there is no product with this code
+     */
+    public int remove(String code) {
+        Integer slot = code == null ? null : slotsByCode.remove(code);
+        if (slot == null) {
+            return -1;
+        }
+        int position = size - prefixCount(slot);
+        items[slot] = null;
+        codes[slot] = null;
+        update(slot, -1);
+        size--;
+        return position;
+    }
+
+    private void put(int slot, String code, Product item) {
+        items[slot] = item;
+        codes[slot] = code;
+        slotsByCode.put(code, slot);
+        update(slot, 1);
+        size++;
+    }
+
+    private int slotAt(int position) {
+        if (position < 0 || position >= size) {
+            throw new IndexOutOfBoundsException("Position " + position + ", size " + size);
+        }
+        //position 0 is the highest taken slot, so look for the (size - position)-th taken slot from the bottom
+        int remaining = size - position;
+        int index = 0;
+        for (int step = Integer.highestOneBit(tree.length - 1); step > 0; step >>= 1) {
+            int candidate = index + step;
+            if (candidate < tree.length && tree[candidate] < remaining) {
+                index = candidate;
+                remaining -= tree[index];
+            }
+        }
+        //tree is 1-based, slots are 0-based
+        return index;
+    }
+
+    private int prefixCount(int slot) {
+        int count = 0;
+        for (int i = slot + 1; i > 0; i -= i & -i) {
+            count += tree[i];
+        }
+        return count;
+    }
+
+    private void update(int slot, int delta) {
+        for (int i = slot + 1; i < tree.length; i += i & -i) {
+            tree[i] += delta;
+        }
+    }
+
+    private void compact() {
+        Product[] oldItems = items;
+        String[] oldCodes = codes;
+        int oldFirst = first;
+        int oldNext = next;
+        int room = Math.max(MIN_CAPACITY, size);
+        allocate(room + size + room);
+
+        int slot = room;
+        for (int i = oldFirst; i < oldNext; i++) {
+            if (oldCodes[i] != null) {
+                items[slot] = oldItems[i];
+                codes[slot] = oldCodes[i];
+                slotsByCode.put(oldCodes[i], slot);
+                tree[slot + 1] = 1;
+                slot++;
+            }
+        }
+        first = room;
+        next = slot;
+        //build the Fenwick tree in place in linear time
+        for (int i = 1; i < tree.length; i++) {
+            int parent = i + (i & -i);
+            if (parent < tree.length) {
+                tree[parent] += tree[i];
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        items = new Product[capacity];
+        codes = new String[capacity];
+        tree = new int[capacity + 1];
+    }
+}
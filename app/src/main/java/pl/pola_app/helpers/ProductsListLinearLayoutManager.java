@@ -26,293 +26,111 @@ package pl.pola_app.helpers;
 
 import android.content.Context;
 import android.graphics.Rect;
-import android.support.v4.view.ViewCompat;
+import android.support.v7.widget.LinearLayoutManager;
 import android.support.v7.widget.RecyclerView;
-import android.util.Log;
 import android.view.View;
 
-import java.lang.reflect.Field;
-
-import pl.pola_app.BuildConfig;
-import timber.log.Timber;
-
 /**
- * {@link android.support.v7.widget.LinearLayoutManager} which wraps its content. Note that this class will always
- * wrap the content regardless of {@link android.support.v7.widget.RecyclerView} layout parameters.
+ * Vertical {@link LinearLayoutManager} for a wrap_content {@link RecyclerView} which grows with the list up to
+ * {@link #HEIGHT_LIMIT} of the space it is given and scrolls after that.
+ * <p/>
+ * All product cards share one layout, so instead of measuring every child on each pass a single card is measured
+ * and its size reused for the rest. The cached size is dropped only when the whole data set changes or the available
+ * width does; adding, removing and rebinding cards keeps it.
  * <p/>
- * Now it's impossible to run add/remove animations with child views which have arbitrary dimensions (height for
- * VERTICAL orientation and width for HORIZONTAL). However if child views have fixed dimensions
- * {@link #setChildSize(int)} method might be used to let the layout manager know how big they are going to be.
- * If animations are not used at all then a normal measuring procedure will run and child views will be measured during
- * the measure pass.
+ * Based on the wrapping {@link LinearLayoutManager} by serso aka se.solovyev.
  */
-public class ProductsListLinearLayoutManager extends android.support.v7.widget.LinearLayoutManager {
-
-    private static double HEIGHT_LIMIT = 0.4; //40% of the screen
-
-    private static boolean canMakeInsetsDirty = true;
-    private static Field insetsDirtyField = null;
+public class ProductsListLinearLayoutManager extends LinearLayoutManager {
 
-    private static final int CHILD_WIDTH = 0;
-    private static final int CHILD_HEIGHT = 1;
-    private static final int DEFAULT_CHILD_SIZE = 100;
+    private static final double HEIGHT_LIMIT = 0.4; //40% of the screen
 
-    private final int[] childDimensions = new int[2];
-    private final RecyclerView view;
+    private int childWidth;
+    private int childHeight;
+    private int measuredForWidth = -1;
+    private final Rect decorInsets = new Rect();
 
-    private int childSize = DEFAULT_CHILD_SIZE;
-    private boolean hasChildSize;
-    private int overScrollMode = ViewCompat.OVER_SCROLL_ALWAYS;
-    private final Rect tmpRect = new Rect();
-
-    @SuppressWarnings("UnusedDeclaration")
     public ProductsListLinearLayoutManager(Context context) {
         super(context);
-        this.view = null;
-    }
-
-    @SuppressWarnings("UnusedDeclaration")
-    public ProductsListLinearLayoutManager(Context context, int orientation, boolean reverseLayout) {
-        super(context, orientation, reverseLayout);
-        this.view = null;
-    }
-
-    @SuppressWarnings("UnusedDeclaration")
-    public ProductsListLinearLayoutManager(RecyclerView view) {
-        super(view.getContext());
-        this.view = view;
-        this.overScrollMode = ViewCompat.getOverScrollMode(view);
-    }
-
-    @SuppressWarnings("UnusedDeclaration")
-    public ProductsListLinearLayoutManager(RecyclerView view, int orientation, boolean reverseLayout) {
-        super(view.getContext(), orientation, reverseLayout);
-        this.view = view;
-        this.overScrollMode = ViewCompat.getOverScrollMode(view);
-    }
-
-    public void setOverScrollMode(int overScrollMode) {
-        if (overScrollMode < ViewCompat.OVER_SCROLL_ALWAYS || overScrollMode > ViewCompat.OVER_SCROLL_NEVER)
-            throw new IllegalArgumentException("Unknown overscroll mode: " + overScrollMode);
-        if (this.view == null) throw new IllegalStateException("view == null");
-        this.overScrollMode = overScrollMode;
-        ViewCompat.setOverScrollMode(view, overScrollMode);
-    }
-
-    public static int makeUnspecifiedSpec() {
-        return View.MeasureSpec.makeMeasureSpec(0, View.MeasureSpec.UNSPECIFIED);
     }
 
     @Override
     public void onMeasure(RecyclerView.Recycler recycler, RecyclerView.State state, int widthSpec, int heightSpec) {
         final int widthMode = View.MeasureSpec.getMode(widthSpec);
         final int heightMode = View.MeasureSpec.getMode(heightSpec);
-
         final int widthSize = View.MeasureSpec.getSize(widthSpec);
         final int heightSize = View.MeasureSpec.getSize(heightSpec);
 
-        final boolean hasWidthSize = widthMode != View.MeasureSpec.UNSPECIFIED;
-        final boolean hasHeightSize = heightMode != View.MeasureSpec.UNSPECIFIED;
-
-        final boolean exactWidth = widthMode == View.MeasureSpec.EXACTLY;
-        final boolean exactHeight = heightMode == View.MeasureSpec.EXACTLY;
-
-        final int unspecified = makeUnspecifiedSpec();
-
-        if (exactWidth && exactHeight) {
-            // in case of exact calculations for both dimensions let's use default "onMeasure" implementation
+        if (widthMode == View.MeasureSpec.EXACTLY && heightMode == View.MeasureSpec.EXACTLY) {
             super.onMeasure(recycler, state, widthSpec, heightSpec);
             return;
         }
 
-        final boolean vertical = getOrientation() == VERTICAL;
-
-        initChildDimensions(widthSize, heightSize, vertical);
-
-        int width = 0;
-        int height = 0;
-
-        // it's possible to get scrap views in recycler which are bound to old (invalid) adapter entities. This
-        // happens because their invalidation happens after "onMeasure" method. As a workaround let's clear the
-        // recycler now (it should not cause any performance issues while scrolling as "onMeasure" is never
-        // called whiles scrolling)
-        recycler.clear();
-
-        final int stateItemCount = state.getItemCount();
-        final int adapterItemCount = getItemCount();
-        // adapter always contains actual data while state might contain old data (f.e. data before the animation is
-        // done). As we want to measure the view with actual data we must use data from the adapter and not from  the
-        // state
-        for (int i = 0; i < adapterItemCount; i++) {
-            if (vertical) {
-                if (!hasChildSize) {
-                    if (i < stateItemCount) {
-                        // we should not exceed state count, otherwise we'll get IndexOutOfBoundsException. For such items
-                        // we will use previously calculated dimensions
-                        measureChild(recycler, i, widthSize, unspecified, childDimensions);
-                    } else {
-                        logMeasureWarning(i);
-                    }
-                }
-                height += childDimensions[CHILD_HEIGHT];
-                if (i == 0) {
-                    width = childDimensions[CHILD_WIDTH];
-                }
-                if (hasHeightSize && height >= heightSize) {
-                    break;
-                }
-            } else {
-                if (!hasChildSize) {
-                    if (i < stateItemCount) {
-                        // we should not exceed state count, otherwise we'll get IndexOutOfBoundsException. For such items
-                        // we will use previously calculated dimensions
-                        measureChild(recycler, i, unspecified, heightSize, childDimensions);
-                    } else {
-                        logMeasureWarning(i);
-                    }
-                }
-                width += childDimensions[CHILD_WIDTH];
-                if (i == 0) {
-                    height = childDimensions[CHILD_HEIGHT];
-                }
-                if (hasWidthSize && width >= widthSize) {
-                    break;
-                }
-            }
+        if (measuredForWidth != widthSize) {
+            invalidateChildSize();
+        }
+        final int itemCount = getItemCount();
+        if (childHeight == 0 && itemCount > 0 && state.getItemCount() > 0) {
+            measureFirstChild(recycler, widthSize);
+            measuredForWidth = widthSize;
         }
 
-        if (exactWidth) {
+        int width;
+        if (widthMode == View.MeasureSpec.EXACTLY) {
             width = widthSize;
         } else {
-            width += getPaddingLeft() + getPaddingRight();
-            if (hasWidthSize) {
+            width = (itemCount > 0 ? childWidth : 0) + getPaddingLeft() + getPaddingRight();
+            if (widthMode == View.MeasureSpec.AT_MOST) {
                 width = Math.min(width, widthSize);
             }
         }
 
-        if (exactHeight) {
+        int height;
+        if (heightMode == View.MeasureSpec.EXACTLY) {
             height = heightSize;
         } else {
-            height += getPaddingTop() + getPaddingBottom();
-            if (hasHeightSize) {
-                height = Math.min(height, (int) (heightSize*HEIGHT_LIMIT));
+            height = (int) Math.min((long) itemCount * childHeight, Integer.MAX_VALUE)
+                    + getPaddingTop() + getPaddingBottom();
+            if (heightMode == View.MeasureSpec.AT_MOST) {
+                height = Math.min(height, (int) (heightSize * HEIGHT_LIMIT));
             }
         }
 
         setMeasuredDimension(width, height);
-
-        if (view != null && overScrollMode == ViewCompat.OVER_SCROLL_IF_CONTENT_SCROLLS) {
-            final boolean fit = (vertical && (!hasHeightSize || height < heightSize))
-                    || (!vertical && (!hasWidthSize || width < widthSize));
-
-            ViewCompat.setOverScrollMode(view, fit ? ViewCompat.OVER_SCROLL_NEVER : ViewCompat.OVER_SCROLL_ALWAYS);
-        }
-    }
-
-    private void logMeasureWarning(int child) {
-            Timber.w("Can't measure child #" + child + ", previously used dimensions will be reused." +
-                    "To remove this message either use #setChildSize() method or don't run RecyclerView animations");
-    }
-
-    private void initChildDimensions(int width, int height, boolean vertical) {
-        if (childDimensions[CHILD_WIDTH] != 0 || childDimensions[CHILD_HEIGHT] != 0) {
-            // already initialized, skipping
-            return;
-        }
-        if (vertical) {
-            childDimensions[CHILD_WIDTH] = width;
-            childDimensions[CHILD_HEIGHT] = childSize;
-        } else {
-            childDimensions[CHILD_WIDTH] = childSize;
-            childDimensions[CHILD_HEIGHT] = height;
-        }
-    }
-
-    @Override
-    public void setOrientation(int orientation) {
-        // might be called before the constructor of this class is called
-        //noinspection ConstantConditions
-        if (childDimensions != null) {
-            if (getOrientation() != orientation) {
-                childDimensions[CHILD_WIDTH] = 0;
-                childDimensions[CHILD_HEIGHT] = 0;
-            }
-        }
-        super.setOrientation(orientation);
     }
 
-    public void clearChildSize() {
-        hasChildSize = false;
-        setChildSize(DEFAULT_CHILD_SIZE);
-    }
-
-    public void setChildSize(int childSize) {
-        hasChildSize = true;
-        if (this.childSize != childSize) {
-            this.childSize = childSize;
-            requestLayout();
-        }
-    }
-
-    private void measureChild(RecyclerView.Recycler recycler, int position, int widthSize, int heightSize, int[] dimensions) {
-        final View child;
-        try {
-            child = recycler.getViewForPosition(position);
-        } catch (IndexOutOfBoundsException e) {
-            if (BuildConfig.DEBUG) {
-                Log.w("ProductsListLinearLayoutManager", "ProductsListLinearLayoutManager doesn't work well with animations. Consider switching them off", e);
-            }
-            return;
-        }
-
+    private void measureFirstChild(RecyclerView.Recycler recycler, int widthSize) {
+        final View child = recycler.getViewForPosition(0);
         final RecyclerView.LayoutParams p = (RecyclerView.LayoutParams) child.getLayoutParams();
 
-        final int hPadding = getPaddingLeft() + getPaddingRight();
-        final int vPadding = getPaddingTop() + getPaddingBottom();
-
-        final int hMargin = p.leftMargin + p.rightMargin;
-        final int vMargin = p.topMargin + p.bottomMargin;
-
-        // we must make insets dirty in order calculateItemDecorationsForChild to work
-        makeInsetsDirty(p);
-        // this method should be called before any getXxxDecorationXxx() methods
-        calculateItemDecorationsForChild(child, tmpRect);
-
-        final int hDecoration = getRightDecorationWidth(child) + getLeftDecorationWidth(child);
-        final int vDecoration = getTopDecorationHeight(child) + getBottomDecorationHeight(child);
-
-        final int childWidthSpec = getChildMeasureSpec(widthSize, hPadding + hMargin + hDecoration, p.width, canScrollHorizontally());
-        final int childHeightSpec = getChildMeasureSpec(heightSize, vPadding + vMargin + vDecoration, p.height, canScrollVertically());
-
-        child.measure(childWidthSpec, childHeightSpec);
-
-        dimensions[CHILD_WIDTH] = getDecoratedMeasuredWidth(child) + p.leftMargin + p.rightMargin;
-        dimensions[CHILD_HEIGHT] = getDecoratedMeasuredHeight(child) + p.bottomMargin + p.topMargin;
-
-        // as view is recycled let's not keep old measured values
-        makeInsetsDirty(p);
+        //measured against the size offered to the list rather than its current width, which is 0 before the first
+        //layout, so measureChildWithMargins can't be used here
+        calculateItemDecorationsForChild(child, decorInsets);
+        final int horizontalUsed = getPaddingLeft() + getPaddingRight() + p.leftMargin + p.rightMargin
+                + decorInsets.left + decorInsets.right;
+        final int verticalUsed = getPaddingTop() + getPaddingBottom() + p.topMargin + p.bottomMargin
+                + decorInsets.top + decorInsets.bottom;
+        child.measure(getChildMeasureSpec(widthSize, horizontalUsed, p.width, false),
+                getChildMeasureSpec(0, verticalUsed, p.height, true));
+
+        childWidth = getDecoratedMeasuredWidth(child) + p.leftMargin + p.rightMargin;
+        childHeight = getDecoratedMeasuredHeight(child) + p.topMargin + p.bottomMargin;
         recycler.recycleView(child);
     }
 
-    private static void makeInsetsDirty(RecyclerView.LayoutParams p) {
-        if (!canMakeInsetsDirty) {
-            return;
-        }
-        try {
-            if (insetsDirtyField == null) {
-                insetsDirtyField = RecyclerView.LayoutParams.class.getDeclaredField("mInsetsDirty");
-                insetsDirtyField.setAccessible(true);
-            }
-            insetsDirtyField.set(p, true);
-        } catch (NoSuchFieldException e) {
-            onMakeInsertDirtyFailed();
-        } catch (IllegalAccessException e) {
-            onMakeInsertDirtyFailed();
-        }
+    private void invalidateChildSize() {
+        childWidth = 0;
+        childHeight = 0;
     }
 
-    private static void onMakeInsertDirtyFailed() {
-        canMakeInsetsDirty = false;
-        Timber.w("Can't make LayoutParams insets dirty, decorations measurements might be incorrect");
+    @Override
+    public void onAdapterChanged(RecyclerView.Adapter oldAdapter, RecyclerView.Adapter newAdapter) {
+        super.onAdapterChanged(oldAdapter, newAdapter);
+        invalidateChildSize();
+    }
+
+    @Override
+    public void onItemsChanged(RecyclerView recyclerView) {
+        super.onItemsChanged(recyclerView);
+        invalidateChildSize();
     }
 }
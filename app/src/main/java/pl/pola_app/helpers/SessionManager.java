@@ -0,0 +1,55 @@
+package pl.pola_app.helpers;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import java.util.UUID;
+
+/**
+ * Holds the session guid sent with every request. It's read from preferences once on a background thread
+ * when the app starts, so asking for it never touches the disk nor waits for the read.
+ * <p/>
+ * Asked before the read is done, a guid is made up in memory. It's the one saved when the preferences don't have
+ * one yet, otherwise the saved guid replaces it once read.
+ */
+public class SessionManager {
+    private static final String PREF_SESSION_GUID = "session_guid";
+
+    private final Context context;
+    private String sessionGuid;
+    private boolean loading;
+
+    public SessionManager(Context context) {
+        this.context = context;
+    }
+
+    public synchronized void load() {
+        if (loading) {
+            return;
+        }
+        loading = true;
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                SharedPreferences pref = Utils.getDefaultSharedPreferences(context);
+                String guid = pref.getString(PREF_SESSION_GUID, null);
+                synchronized (SessionManager.this) {
+                    if (guid == null) {
+                        guid = sessionGuid != null ? sessionGuid : UUID.randomUUID().toString();
+                        pref.edit().putString(PREF_SESSION_GUID, guid).apply();
+                    }
+                    sessionGuid = guid;
+                }
+            }
+        }, "SessionManager").start();
+    }
+
+    public synchronized String getSessionGuid() {
+        if (sessionGuid == null) {
+            //only right after the start, before the background read is done
+            load();
+            sessionGuid = UUID.randomUUID().toString();
+        }
+        return sessionGuid;
+    }
+}
@@ -0,0 +1,20 @@
+package pl.pola_app.internal.di;
+
+import javax.inject.Singleton;
+
+import dagger.Module;
+import dagger.Provides;
+import pl.pola_app.BuildConfig;
+import pl.pola_app.analytics.Analytics;
+import pl.pola_app.analytics.AnswersSink;
+import pl.pola_app.analytics.LogSink;
+
+@Module
+public class AnalyticsModule {
+
+    @Provides
+    @Singleton
+    Analytics provideAnalytics() {
+        return new Analytics(BuildConfig.USE_CRASHLYTICS ? new AnswersSink() : new LogSink());
+    }
+}
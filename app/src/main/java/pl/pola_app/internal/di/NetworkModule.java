@@ -0,0 +1,122 @@
+package pl.pola_app.internal.di;
+
+import android.content.Context;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.squareup.okhttp.Cache;
+import com.squareup.okhttp.ConnectionPool;
+import com.squareup.okhttp.Dispatcher;
+import com.squareup.okhttp.HttpUrl;
+import com.squareup.okhttp.OkHttpClient;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+import javax.inject.Singleton;
+
+import dagger.Module;
+import dagger.Provides;
+import pl.pola_app.R;
+import pl.pola_app.helpers.MainThreadExecutor;
+import pl.pola_app.helpers.Utils;
+import pl.pola_app.metrics.ScanTimings;
+import pl.pola_app.model.ReportResult;
+import pl.pola_app.model.SearchResult;
+import pl.pola_app.network.Api;
+import pl.pola_app.network.ApiConnectionTracker;
+import pl.pola_app.network.CachingDns;
+import pl.pola_app.network.ProductWireConverterFactory;
+import pl.pola_app.network.ReportResultTypeAdapter;
+import pl.pola_app.network.SearchResultTypeAdapter;
+import pl.pola_app.network.TimingConverterFactory;
+import pl.pola_app.network.UploadApi;
+import retrofit.GsonConverterFactory;
+import retrofit.Retrofit;
+
+@Module
+public class NetworkModule {
+    private static final int MAX_IDLE_CONNECTIONS = 4;
+    private static final long KEEP_ALIVE_MILLIS = TimeUnit.MINUTES.toMillis(5);
+    private static final long HTTP_CACHE_SIZE = 10 * 1024 * 1024;
+    private static final int MAX_REQUESTS_PER_HOST = 4;
+
+    private final Context context;
+
+    public NetworkModule(Context context) {
+        this.context = context;
+    }
+
+    @Provides
+    @Singleton
+    HttpUrl provideApiUrl() {
+        return HttpUrl.parse(context.getString(R.string.pola_api_url));
+    }
+
+    @Provides
+    @Singleton
+    CachingDns provideCachingDns() {
+        return new CachingDns();
+    }
+
+    @Provides
+    @Singleton
+    OkHttpClient provideOkHttpClient(CachingDns dns, ApiConnectionTracker connectionTracker) {
+        OkHttpClient client = new OkHttpClient();
+        client.setDns(dns);
+        client.networkInterceptors().add(connectionTracker);
+        client.setConnectTimeout(Utils.TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        client.setReadTimeout(Utils.TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        //keep connections to the API warm between scans
+        client.setConnectionPool(new ConnectionPool(MAX_IDLE_CONNECTIONS, KEEP_ALIVE_MILLIS));
+        client.setCache(new Cache(new File(context.getCacheDir(), "http"), HTTP_CACHE_SIZE));
+
+        Dispatcher dispatcher = new Dispatcher();
+        dispatcher.setMaxRequestsPerHost(MAX_REQUESTS_PER_HOST);
+        client.setDispatcher(dispatcher);
+        return client;
+    }
+
+    @Provides
+    @Singleton
+    Gson provideGson() {
+        //the models parsed on every scan skip reflective binding
+        return new GsonBuilder()
+                .registerTypeAdapter(SearchResult.class, new SearchResultTypeAdapter())
+                .registerTypeAdapter(ReportResult.class, new ReportResultTypeAdapter())
+                .create();
+    }
+
+    @Provides
+    @Singleton
+    Retrofit provideRetrofit(OkHttpClient client, HttpUrl apiUrl, Gson gson, ScanTimings scanTimings) {
+        return new Retrofit.Builder()
+                .baseUrl(apiUrl)
+                .addConverterFactory(new TimingConverterFactory(
+                        new ProductWireConverterFactory(GsonConverterFactory.create(gson)), scanTimings))
+                .client(client)
+                .callbackExecutor(new MainThreadExecutor())
+                .build();
+    }
+
+    @Provides
+    @Singleton
+    Api provideApi(Retrofit retrofit) {
+        return retrofit.create(Api.class);
+    }
+
+    @Provides
+    @Singleton
+    UploadApi provideUploadApi(OkHttpClient client, HttpUrl apiUrl, Gson gson) {
+        //photos are never read back, and a slow upload shouldn't hold a dispatcher slot a lookup could use
+        OkHttpClient uploadClient = client.clone();
+        uploadClient.setCache(null);
+        uploadClient.setDispatcher(new Dispatcher());
+        return new Retrofit.Builder()
+                .baseUrl(apiUrl)
+                .addConverterFactory(GsonConverterFactory.create(gson))
+                .client(uploadClient)
+                .build()
+                .create(UploadApi.class);
+    }
+}
@@ -4,27 +4,36 @@ import javax.inject.Singleton;
 
 import dagger.Component;
 import pl.pola_app.PolaApplication;
+import pl.pola_app.helpers.SessionManager;
+import pl.pola_app.storage.SnapshotSync;
+import pl.pola_app.ui.activity.CreateReportActivity;
 import pl.pola_app.ui.activity.MainActivity;
-import pl.pola_app.ui.adapter.ProductsAdapter;
 import pl.pola_app.ui.fragment.ProductDetailsFragment;
 import pl.pola_app.ui.fragment.ProductsListFragment;
 import pl.pola_app.ui.fragment.ScannerFragment;
+import pl.pola_app.ui.scanner.DecoderEngineSelector;
 
 @Singleton
-@Component(modules = {OttoModule.class, WidgetModule.class})
+@Component(modules = {OttoModule.class, WidgetModule.class, StorageModule.class, NetworkModule.class, AnalyticsModule.class})
 public interface PolaComponent {
 
     final class Initializer {
         public static PolaComponent init(PolaApplication app) {
             return DaggerPolaComponent.builder()
                     .widgetModule(new WidgetModule(app))
+                    .storageModule(new StorageModule(app))
+                    .networkModule(new NetworkModule(app))
                     .build();
         }
     }
 
+    SessionManager sessionManager();
+    SnapshotSync snapshotSync();
+    DecoderEngineSelector decoderEngineSelector();
+
     void inject(MainActivity mainActivity);
+    void inject(CreateReportActivity createReportActivity);
     void inject(ScannerFragment scannerFragment);
     void inject(ProductsListFragment productsListFragment);
     void inject(ProductDetailsFragment productDetailsFragment);
-    void inject(ProductsAdapter.ViewHolder productsViewHolder);
 }
@@ -0,0 +1,56 @@
+package pl.pola_app.internal.di;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import java.io.File;
+
+import javax.inject.Singleton;
+
+import dagger.Module;
+import dagger.Provides;
+import pl.pola_app.helpers.SessionManager;
+import pl.pola_app.helpers.Utils;
+import pl.pola_app.metrics.ScanTimings;
+import pl.pola_app.storage.PolaDatabaseHelper;
+import pl.pola_app.storage.ProductSnapshot;
+import pl.pola_app.ui.scanner.DecoderEngineSelector;
+
+@Module
+public class StorageModule {
+    private final Context context;
+
+    public StorageModule(Context context) {
+        this.context = context;
+    }
+
+    @Provides
+    @Singleton
+    SessionManager provideSessionManager() {
+        return new SessionManager(context);
+    }
+
+    @Provides
+    @Singleton
+    SharedPreferences provideSharedPreferences() {
+        return Utils.getDefaultSharedPreferences(context);
+    }
+
+    @Provides
+    @Singleton
+    PolaDatabaseHelper providePolaDatabaseHelper() {
+        return new PolaDatabaseHelper(context);
+    }
+
+    @Provides
+    @Singleton
+    ProductSnapshot provideProductSnapshot() {
+        return new ProductSnapshot(new File(context.getFilesDir(), "products.snapshot"));
+    }
+
+    @Provides
+    @Singleton
+    DecoderEngineSelector provideDecoderEngineSelector(ScanTimings scanTimings) {
+        return new DecoderEngineSelector(context, scanTimings);
+    }
+}
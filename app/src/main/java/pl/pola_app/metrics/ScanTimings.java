@@ -0,0 +1,122 @@
+package pl.pola_app.metrics;
+
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import timber.log.Timber;
+
+/**
+ * Measures how long each stage between a decoded barcode and its card on screen takes.
+ * <p/>
+ * A scan is traced by its code: {@link #begin(String)} when it's decoded, {@link #stage(String, Stage)} whenever a
+ * stage is done (it records the time since the previous one) and {@link #end(String)} once the card is bound.
+ * Decoding, the work done on each camera frame, JSON parsing and connection warm ups aren't tied to a code, they are
+ * recorded directly with {@link #record(Stage, long)}.
+ */
+@Singleton
+public class ScanTimings {
+    private static final int LOG_EVERY = 20;
+
+    public enum Stage {
+        //time from (re)starting the decoder to a result
+        DECODE,
+        VIBRATE,
+        //from the decoder callback to MainActivity
+        DISPATCH,
+        //whole lookup: cache, snapshot or server
+        NETWORK,
+        PARSE,
+        //from the answer to the bound card
+        BIND,
+        TOTAL,
+        //per camera frame: copying the region of interest, halving it and decoding it at half or full resolution
+        FRAME_ROI,
+        FRAME_DOWNSCALE,
+        FRAME_DECODE_HALF,
+        FRAME_DECODE_FULL,
+        FRAME_DECODE_THOROUGH,
+        //per camera frame, decoding with Mobile Vision
+        FRAME_DECODE_VISION,
+        //connecting to the API ahead of a scan, the time the next lookup doesn't have to wait for
+        WARM_UP
+    }
+
+    private static class Trace {
+        final long start;
+        long last;
+
+        Trace(long start) {
+            this.start = start;
+            this.last = start;
+        }
+    }
+
+    private final LatencyHistogram[] histograms = new LatencyHistogram[Stage.values().length];
+    private final ConcurrentHashMap<String, Trace> traces = new ConcurrentHashMap<>();
+    private final AtomicInteger completed = new AtomicInteger();
+
+    @Inject
+    public ScanTimings() {
+        for (int i = 0; i < histograms.length; i++) {
+            histograms[i] = new LatencyHistogram();
+        }
+    }
+
+    public void record(Stage stage, long startNanos) {
+        histograms[stage.ordinal()].recordNanos(System.nanoTime() - startNanos);
+    }
+
+    public void begin(String code) {
+        traces.put(code, new Trace(System.nanoTime()));
+    }
+
+    public void stage(String code, Stage stage) {
+        Trace trace = traces.get(code);
+        if (trace != null) {
+            long now = System.nanoTime();
+            histograms[stage.ordinal()].recordNanos(now - trace.last);
+            trace.last = now;
+        }
+    }
+
+    public void end(String code) {
+        Trace trace = traces.remove(code);
+        if (trace != null) {
+            long now = System.nanoTime();
+            histograms[Stage.BIND.ordinal()].recordNanos(now - trace.last);
+            histograms[Stage.TOTAL.ordinal()].recordNanos(now - trace.start);
+            if (completed.incrementAndGet() % LOG_EVERY == 0) {
+                Timber.i(report());
+            }
+        }
+    }
+
+    public void cancel(String code) {
+        traces.remove(code);
+    }
+
+    public long getCount(Stage stage) {
+        return histograms[stage.ordinal()].getCount();
+    }
+
+    public long getTotalMicros(Stage stage) {
+        return histograms[stage.ordinal()].getTotalMicros();
+    }
+
+    public String report() {
+        StringBuilder report = new StringBuilder("stage: p50 / p95 / p99 ms (count)");
+        for (Stage stage : Stage.values()) {
+            LatencyHistogram histogram = histograms[stage.ordinal()];
+            report.append(String.format(Locale.US, "\n%s: %.1f / %.1f / %.1f (%d)", stage.name().toLowerCase(Locale.US),
+                    histogram.getValueAtPercentile(50) / 1000f,
+                    histogram.getValueAtPercentile(95) / 1000f,
+                    histogram.getValueAtPercentile(99) / 1000f,
+                    histogram.getCount()));
+        }
+        return report.toString();
+    }
+}
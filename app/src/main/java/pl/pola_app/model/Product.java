@@ -0,0 +1,115 @@
+package pl.pola_app.model;
+
+/**
+ * Immutable, display-ready form of a {@link SearchResult}. Scores are kept as primitive ints with a bitmask telling
+ * which of them the server knew, card and report button types are resolved to enums once instead of comparing
+ * strings on every bind.
+ */
+public final class Product {
+    public static final int PRODUCT_ID = 1;
+    public static final int PL_SCORE = 1 << 1;
+    public static final int PL_CAPITAL = 1 << 2;
+    public static final int PL_WORKERS = 1 << 3;
+    public static final int PL_RND = 1 << 4;
+    public static final int PL_REGISTERED = 1 << 5;
+    public static final int PL_NOT_GLOB_ENT = 1 << 6;
+
+    public enum CardType {
+        WHITE, GREY;
+
+        static CardType of(String value) {
+            return "type_grey".equals(value) ? GREY : WHITE;
+        }
+    }
+
+    public enum ReportButtonType {
+        WHITE, RED;
+
+        static ReportButtonType of(String value) {
+            return "type_red".equals(value) ? RED : WHITE;
+        }
+    }
+
+    public final String code;
+    public final String name;
+    public final String altText;
+    public final String description;
+    public final String reportText;
+    public final String reportButtonText;
+    public final CardType cardType;
+    public final ReportButtonType reportButtonType;
+
+    public final int productId;
+    public final int plScore;
+    public final int plCapital;
+    public final int plWorkers;
+    public final int plRnD;
+    public final int plRegistered;
+    public final int plNotGlobEnt;
+
+    //set on list entries still waiting for their lookup
+    public final boolean placeholder;
+
+    private final int known;
+
+    private Product(String code, SearchResult searchResult) {
+        this.code = code;
+        this.placeholder = searchResult == null;
+        if (searchResult == null) {
+            name = altText = description = reportText = reportButtonText = null;
+            cardType = CardType.WHITE;
+            reportButtonType = ReportButtonType.WHITE;
+            productId = plScore = plCapital = plWorkers = plRnD = plRegistered = plNotGlobEnt = 0;
+            known = 0;
+            return;
+        }
+
+        name = searchResult.name;
+        altText = searchResult.altText;
+        description = searchResult.description;
+        reportText = searchResult.report_text;
+        reportButtonText = searchResult.report_button_text;
+        cardType = CardType.of(searchResult.card_type);
+        reportButtonType = ReportButtonType.of(searchResult.report_button_type);
+
+        int known = 0;
+        known |= searchResult.product_id != null ? PRODUCT_ID : 0;
+        known |= searchResult.plScore != null ? PL_SCORE : 0;
+        known |= searchResult.plCapital != null ? PL_CAPITAL : 0;
+        known |= searchResult.plWorkers != null ? PL_WORKERS : 0;
+        known |= searchResult.plRnD != null ? PL_RND : 0;
+        known |= searchResult.plRegistered != null ? PL_REGISTERED : 0;
+        known |= searchResult.plNotGlobEnt != null ? PL_NOT_GLOB_ENT : 0;
+        this.known = known;
+
+        productId = searchResult.product_id != null ? searchResult.product_id : 0;
+        plScore = searchResult.plScore != null ? searchResult.plScore : 0;
+        plCapital = searchResult.plCapital != null ? searchResult.plCapital : 0;
+        plWorkers = searchResult.plWorkers != null ? searchResult.plWorkers : 0;
+        plRnD = searchResult.plRnD != null ? searchResult.plRnD : 0;
+        plRegistered = searchResult.plRegistered != null ? searchResult.plRegistered : 0;
+        plNotGlobEnt = searchResult.plNotGlobEnt != null ? searchResult.plNotGlobEnt : 0;
+    }
+
+    /**
+     * @param code barcode the product was scanned with, used when the answer doesn't repeat it
+     */
+    public static Product from(String code, SearchResult searchResult) {
+        if (searchResult == null) {
+            throw new NullPointerException("searchResult == null");
+        }
+        return new Product(searchResult.code != null ? searchResult.code : code, searchResult);
+    }
+
+    public static Product placeholder(String code) {
+        return new Product(code, null);
+    }
+
+    /**
+     * @param field one of the field constants, e.g. {@link #PL_SCORE}
+     * @return false if the server didn't know the value, the field is 0 then
+     */
+    public boolean has(int field) {
+        return (known & field) != 0;
+    }
+}
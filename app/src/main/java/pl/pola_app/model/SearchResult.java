@@ -1,8 +1,5 @@
 package pl.pola_app.model;
 
-import org.parceler.Parcel;
-
-@Parcel
 public class SearchResult {
     public Integer product_id;
     public String code;
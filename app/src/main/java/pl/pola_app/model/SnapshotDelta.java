@@ -0,0 +1,10 @@
+package pl.pola_app.model;
+
+import java.util.List;
+
+public class SnapshotDelta {
+    public long version;
+    public boolean full_required;
+    public List<SearchResult> products;
+    public List<String> removed;
+}
@@ -1,29 +1,37 @@
 package pl.pola_app.network;
 
-import com.google.gson.JsonObject;
-import com.squareup.okhttp.RequestBody;
+import com.squareup.okhttp.ResponseBody;
+
+import java.util.List;
 
 import pl.pola_app.model.SearchResult;
 import pl.pola_app.model.Report;
 import pl.pola_app.model.ReportResult;
+import pl.pola_app.model.SnapshotDelta;
 import retrofit.Call;
 import retrofit.http.Body;
 import retrofit.http.GET;
 import retrofit.http.Headers;
 import retrofit.http.POST;
-import retrofit.http.PUT;
 import retrofit.http.Query;
-import retrofit.http.Url;
+import retrofit.http.Streaming;
 
 public interface Api {
+    @Headers("Accept: " + ProductWireConverterFactory.ACCEPT)
     @GET("a/v2/get_by_code")
     Call<SearchResult> getByCode(@Query("code") String barcode, @Query("device_id") String deviceId);
 
+    @POST("a/v2/get_by_codes")
+    Call<List<SearchResult>> getByCodes(@Query("device_id") String deviceId, @Body List<String> barcodes);
+
+    @Streaming
+    @GET("a/v2/snapshot")
+    Call<ResponseBody> getSnapshot();
+
+    @GET("a/v2/snapshot_delta")
+    Call<SnapshotDelta> getSnapshotDelta(@Query("since") long version);
+
     @Headers("Content-Encoding: gzip")
     @POST("a/v2/create_report")
     Call<ReportResult> createReport(@Query("device_id") String deviceId, @Body Report report);
-
-    @Headers({"x-amz-acl: public-read", "Content-Type: image/*"})
-    @PUT
-    Call<JsonObject> sendReportImage(@Url String url, @Body RequestBody file);
 }
@@ -0,0 +1,41 @@
+package pl.pola_app.network;
+
+import com.squareup.okhttp.HttpUrl;
+import com.squareup.okhttp.Interceptor;
+import com.squareup.okhttp.Response;
+
+import java.io.IOException;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+/**
+ * Network interceptor noting when a request last went over a connection to the API host.
+ * Cache hits don't reach it, they don't keep a connection alive.
+ */
+@Singleton
+public class ApiConnectionTracker implements Interceptor {
+    private final String apiHost;
+    private volatile long lastExchange;
+
+    @Inject
+    public ApiConnectionTracker(HttpUrl apiUrl) {
+        this.apiHost = apiUrl.host();
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Response response = chain.proceed(chain.request());
+        if (apiHost.equals(chain.request().httpUrl().host())) {
+            lastExchange = System.nanoTime();
+        }
+        return response;
+    }
+
+    /**
+     * @return {@link System#nanoTime()} of the last exchange with the API host, 0 if there was none
+     */
+    public long getLastExchange() {
+        return lastExchange;
+    }
+}
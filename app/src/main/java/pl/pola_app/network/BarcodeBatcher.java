@@ -0,0 +1,217 @@
+package pl.pola_app.network;
+
+import android.content.SharedPreferences;
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import pl.pola_app.helpers.Ean;
+import pl.pola_app.model.SearchResult;
+import retrofit.Call;
+import retrofit.Callback;
+import retrofit.Response;
+import retrofit.Retrofit;
+import timber.log.Timber;
+
+/**
+ * Sends barcode lookups to the server, batching codes scanned in quick succession.
+ * <p/>
+ * A code scanned while nothing is in flight goes out right away. Codes scanned while requests are still
+ * running are gathered for {@link #BATCH_WINDOW_MILLIS} and sent as one {@link Api#getByCodes} request.
+ * If the server doesn't support batches, answering with a client error, they are sent as concurrent single requests
+ * over the pooled connection and batches aren't tried again for {@link #BATCH_RETRY_MILLIS}, restarts included.
+ * A batch that fails otherwise, or whose answer can't be read, is also sent as single requests.
+ * <p/>
+ * Batch answers are matched to the codes asked for by code, leading zeros ignored since the server may answer with
+ * the normalized form, and by position for entries whose code matches nothing.
+ * Must be called on the main thread.
+ */
+@Singleton
+public class BarcodeBatcher {
+    static final long BATCH_WINDOW_MILLIS = 150;
+    static final int MAX_BATCH_SIZE = 20;
+    static final long BATCH_RETRY_MILLIS = TimeUnit.DAYS.toMillis(1);
+    static final String PREF_BATCH_RETRY_AT = "batch_lookup_retry_at";
+
+    private final Api api;
+    private final Retrofit retrofit;
+    private final SharedPreferences preferences;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    private Map<String, List<Callback<SearchResult>>> pending = new LinkedHashMap<>();
+    private final Map<String, Call<SearchResult>> singleCalls = new HashMap<>();
+    private String pendingDeviceId;
+    private int outstanding;
+    private boolean flushScheduled;
+    //wall clock time batches can be tried again, -1 until read from preferences
+    private long batchRetryAt = -1;
+
+    private final Runnable flushRunnable = new Runnable() {
+        @Override
+        public void run() {
+            flushScheduled = false;
+            flush();
+        }
+    };
+
+    @Inject
+    public BarcodeBatcher(Api api, Retrofit retrofit, SharedPreferences preferences) {
+        this.api = api;
+        this.retrofit = retrofit;
+        this.preferences = preferences;
+    }
+
+    public void enqueue(String code, String deviceId, Callback<SearchResult> callback) {
+        List<Callback<SearchResult>> callbacks = pending.get(code);
+        if (callbacks == null) {
+            callbacks = new ArrayList<>();
+            pending.put(code, callbacks);
+        }
+        callbacks.add(callback);
+        pendingDeviceId = deviceId;
+
+        if (outstanding == 0 || pending.size() >= MAX_BATCH_SIZE) {
+            mainHandler.removeCallbacks(flushRunnable);
+            flushScheduled = false;
+            flush();
+        } else if (!flushScheduled) {
+            flushScheduled = true;
+            mainHandler.postDelayed(flushRunnable, BATCH_WINDOW_MILLIS);
+        }
+    }
+
+    /**
+     * Forgets a code that wasn't sent yet or cancels its single request.
+     * Codes already sent in a batch can't be taken back, their answers still reach the callbacks.
+     */
+    public void cancel(String code) {
+        pending.remove(code);
+        Call<SearchResult> call = singleCalls.remove(code);
+        if (call != null) {
+            call.cancel();
+        }
+    }
+
+    private void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        final Map<String, List<Callback<SearchResult>>> batch = pending;
+        final String deviceId = pendingDeviceId;
+        pending = new LinkedHashMap<>();
+
+        if (batch.size() == 1 || !isBatchSupported()) {
+            sendSingles(batch, deviceId);
+            return;
+        }
+
+        outstanding++;
+        final List<String> codes = new ArrayList<>(batch.keySet());
+        api.getByCodes(deviceId, codes).enqueue(new Callback<List<SearchResult>>() {
+            @Override
+            public void onResponse(Response<List<SearchResult>> response, Retrofit retrofit) {
+                outstanding--;
+                if (isUnsupported(response.code())) {
+                    Timber.d("Batch lookups not supported by the server, falling back to single requests");
+                    batchRetryAt = System.currentTimeMillis() + BATCH_RETRY_MILLIS;
+                    preferences.edit().putLong(PREF_BATCH_RETRY_AT, batchRetryAt).apply();
+                } else if (response.isSuccess() && response.body() != null) {
+                    fanOut(batch, codes, response.body());
+                }
+                //whatever the batch didn't answer is asked for one by one
+                sendSingles(batch, deviceId);
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                outstanding--;
+                Timber.d(t, "Batch lookup failed, falling back to single requests");
+                sendSingles(batch, deviceId);
+            }
+        });
+    }
+
+    private static boolean isUnsupported(int code) {
+        //a server without the batch endpoint may answer with any client error for it
+        return code >= 400 && code < 500 || code == 501;
+    }
+
+    private boolean isBatchSupported() {
+        if (batchRetryAt < 0) {
+            //already in memory, SessionManager reads the default preferences at start
+            batchRetryAt = preferences.getLong(PREF_BATCH_RETRY_AT, 0);
+        }
+        return System.currentTimeMillis() >= batchRetryAt;
+    }
+
+    private void fanOut(Map<String, List<Callback<SearchResult>>> batch, List<String> codes, List<SearchResult> results) {
+        Map<String, String> codesByNormalized = new HashMap<>();
+        for (String code : codes) {
+            codesByNormalized.put(Ean.normalize(code), code);
+        }
+        boolean positional = results.size() == codes.size();
+        for (int i = 0; i < results.size(); i++) {
+            SearchResult searchResult = results.get(i);
+            if (searchResult == null) {
+                continue;
+            }
+            String code = codesByNormalized.get(Ean.normalize(searchResult.code));
+            if (code == null && positional) {
+                code = codes.get(i);
+            }
+            if (code != null) {
+                deliver(batch.remove(code), searchResult);
+            }
+        }
+    }
+
+    private void sendSingles(Map<String, List<Callback<SearchResult>>> batch, String deviceId) {
+        for (final Map.Entry<String, List<Callback<SearchResult>>> entry : batch.entrySet()) {
+            outstanding++;
+            final Call<SearchResult> call = api.getByCode(entry.getKey(), deviceId);
+            singleCalls.put(entry.getKey(), call);
+            call.enqueue(new Callback<SearchResult>() {
+                @Override
+                public void onResponse(Response<SearchResult> response, Retrofit retrofit) {
+                    outstanding--;
+                    if (singleCalls.get(entry.getKey()) == call) {
+                        singleCalls.remove(entry.getKey());
+                    }
+                    for (Callback<SearchResult> callback : entry.getValue()) {
+                        callback.onResponse(response, retrofit);
+                    }
+                }
+
+                @Override
+                public void onFailure(Throwable t) {
+                    outstanding--;
+                    if (singleCalls.get(entry.getKey()) == call) {
+                        singleCalls.remove(entry.getKey());
+                    }
+                    for (Callback<SearchResult> callback : entry.getValue()) {
+                        callback.onFailure(t);
+                    }
+                }
+            });
+        }
+    }
+
+    private void deliver(List<Callback<SearchResult>> callbacks, SearchResult searchResult) {
+        if (callbacks == null) {
+            return;
+        }
+        Response<SearchResult> response = Response.success(searchResult);
+        for (Callback<SearchResult> callback : callbacks) {
+            callback.onResponse(response, retrofit);
+        }
+    }
+}
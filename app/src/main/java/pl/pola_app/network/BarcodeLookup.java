@@ -0,0 +1,226 @@
+package pl.pola_app.network;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import pl.pola_app.model.SearchResult;
+import pl.pola_app.storage.ProductCache;
+import pl.pola_app.storage.ProductSnapshot;
+import retrofit.Callback;
+import retrofit.Response;
+import retrofit.Retrofit;
+import timber.log.Timber;
+
+/**
+ * Resolves scanned barcodes, answering from {@link ProductCache} first, then from the offline
+ * {@link ProductSnapshot} and going to the server through {@link BarcodeBatcher} only when neither knows the code.
+ * Stale answers are returned right away and refreshed in the background: cache entries older than
+ * {@link ProductCache#TTL_MILLIS}, and snapshot hits when the snapshot wasn't synced for as long.
+ * <p/>
+ * Lookups for a code that is already being resolved don't start a new request, they wait for the one in flight.
+ * A code can also be {@link #prefetch prefetched} before the scan is confirmed, a later lookup joins that request.
+ * Must be called on the main thread, callbacks are delivered there too through the
+ * {@link Retrofit#callbackExecutor() callback executor} of the Retrofit instance.
+ */
+@Singleton
+public class BarcodeLookup {
+
+    private static class Lookup {
+        final List<Callback<SearchResult>> callbacks = new ArrayList<>();
+    }
+
+    private final BarcodeBatcher barcodeBatcher;
+    private final Retrofit retrofit;
+    private final ProductCache productCache;
+    private final ProductSnapshot productSnapshot;
+    private final ExecutorService diskExecutor = Executors.newSingleThreadExecutor();
+    private final Executor mainThread;
+
+    private final Map<String, Lookup> inFlight = new HashMap<>();
+    private int lookupCount;
+    private int coalescedCount;
+    private int prefetchCount;
+    private int cancelledPrefetchCount;
+
+    @Inject
+    public BarcodeLookup(BarcodeBatcher barcodeBatcher, Retrofit retrofit, ProductCache productCache, ProductSnapshot productSnapshot) {
+        this.barcodeBatcher = barcodeBatcher;
+        this.retrofit = retrofit;
+        this.productCache = productCache;
+        this.productSnapshot = productSnapshot;
+        this.mainThread = retrofit.callbackExecutor();
+    }
+
+    public boolean isInFlight(String code) {
+        Lookup lookup = inFlight.get(code);
+        //a prefetch nobody asked for yet doesn't count
+        return lookup != null && !lookup.callbacks.isEmpty();
+    }
+
+    public int getLookupCount() {
+        return lookupCount;
+    }
+
+    /**
+     * @return number of lookups that joined a request already in flight instead of making their own
+     */
+    public int getCoalescedCount() {
+        return coalescedCount;
+    }
+
+    public void lookup(String code, String deviceId, Callback<SearchResult> callback) {
+        lookupCount++;
+        Lookup lookup = inFlight.get(code);
+        if (lookup != null) {
+            lookup.callbacks.add(callback);
+            coalescedCount++;
+            Timber.d("Joined lookup in flight for " + code + ", " + coalescedCount + "/" + lookupCount + " lookups saved");
+            return;
+        }
+        lookup = new Lookup();
+        lookup.callbacks.add(callback);
+        start(code, deviceId, lookup);
+    }
+
+    /**
+     * Starts resolving a code that was seen but not confirmed yet, see {@link #cancelPrefetch(String)}.
+     */
+    public void prefetch(String code, String deviceId) {
+        if (inFlight.containsKey(code)) {
+            return;
+        }
+        prefetchCount++;
+        start(code, deviceId, new Lookup());
+    }
+
+    /**
+     * Drops a prefetch that no lookup has joined, cancelling its request if it is still cancellable.
+     */
+    public void cancelPrefetch(String code) {
+        Lookup lookup = inFlight.get(code);
+        if (lookup != null && lookup.callbacks.isEmpty()) {
+            inFlight.remove(code);
+            barcodeBatcher.cancel(code);
+            cancelledPrefetchCount++;
+            Timber.d("Cancelled prefetch of " + code + ", " + cancelledPrefetchCount + "/" + prefetchCount + " prefetches wasted");
+        }
+    }
+
+    private void start(final String code, final String deviceId, final Lookup lookup) {
+        inFlight.put(code, lookup);
+        diskExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                ProductCache.Entry entry = null;
+                try {
+                    entry = productCache.get(code);
+                } catch (RuntimeException e) {
+                    Timber.w(e, "Product cache read failed");
+                }
+
+                if (entry != null) {
+                    deliver(code, lookup, entry.searchResult);
+                    if (entry.stale) {
+                        fetch(code, deviceId, null);
+                    }
+                    return;
+                }
+
+                SearchResult local = null;
+                try {
+                    local = productSnapshot.find(code);
+                } catch (RuntimeException e) {
+                    Timber.w(e, "Product snapshot read failed");
+                }
+                if (local != null) {
+                    deliver(code, lookup, local);
+                    if (System.currentTimeMillis() - productSnapshot.getLastSynced() > ProductCache.TTL_MILLIS) {
+                        fetch(code, deviceId, null);
+                    }
+                } else {
+                    fetch(code, deviceId, lookup);
+                }
+            }
+        });
+    }
+
+    private void deliver(final String code, final Lookup lookup, final SearchResult searchResult) {
+        mainThread.execute(new Runnable() {
+            @Override
+            public void run() {
+                complete(code, lookup, Response.success(searchResult));
+            }
+        });
+    }
+
+    private void fetch(final String code, final String deviceId, final Lookup lookup) {
+        mainThread.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (lookup != null && inFlight.get(code) != lookup) {
+                    //cancelled while reading the cache
+                    return;
+                }
+                barcodeBatcher.enqueue(code, deviceId, new Callback<SearchResult>() {
+                    @Override
+                    public void onResponse(Response<SearchResult> response, Retrofit retrofit) {
+                        if (response.isSuccess() && response.body() != null) {
+                            store(response.body());
+                        }
+                        if (lookup != null) {
+                            complete(code, lookup, response);
+                        }
+                    }
+
+                    @Override
+                    public void onFailure(Throwable t) {
+                        if (lookup != null) {
+                            fail(code, lookup, t);
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    private void complete(String code, Lookup lookup, Response<SearchResult> response) {
+        if (inFlight.get(code) != lookup) {
+            return;
+        }
+        inFlight.remove(code);
+        for (Callback<SearchResult> callback : lookup.callbacks) {
+            callback.onResponse(response, retrofit);
+        }
+    }
+
+    private void fail(String code, Lookup lookup, Throwable t) {
+        if (inFlight.get(code) != lookup) {
+            return;
+        }
+        inFlight.remove(code);
+        for (Callback<SearchResult> callback : lookup.callbacks) {
+            callback.onFailure(t);
+        }
+    }
+
+    private void store(final SearchResult searchResult) {
+        diskExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    productCache.put(searchResult);
+                } catch (RuntimeException e) {
+                    Timber.w(e, "Product cache write failed");
+                }
+            }
+        });
+    }
+}
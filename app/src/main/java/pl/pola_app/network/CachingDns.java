@@ -0,0 +1,41 @@
+package pl.pola_app.network;
+
+import com.squareup.okhttp.Dns;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps resolved addresses in memory for {@link #TTL_MILLIS} so that only the first request in a while pays for
+ * a DNS round-trip.
+ */
+public class CachingDns implements Dns {
+    public static final long TTL_MILLIS = TimeUnit.MINUTES.toMillis(5);
+
+    private static class Entry {
+        final List<InetAddress> addresses;
+        final long expiresAt;
+
+        Entry(List<InetAddress> addresses, long expiresAt) {
+            this.addresses = addresses;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+
+    @Override
+    public List<InetAddress> lookup(String hostname) throws UnknownHostException {
+        long now = System.currentTimeMillis();
+        Entry entry = entries.get(hostname);
+        if (entry != null && entry.expiresAt > now) {
+            return entry.addresses;
+        }
+        List<InetAddress> addresses = Dns.SYSTEM.lookup(hostname);
+        entries.put(hostname, new Entry(addresses, now + TTL_MILLIS));
+        return addresses;
+    }
+}
@@ -0,0 +1,87 @@
+package pl.pola_app.network;
+
+import com.squareup.okhttp.HttpUrl;
+import com.squareup.okhttp.OkHttpClient;
+import com.squareup.okhttp.Request;
+import com.squareup.okhttp.Response;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import pl.pola_app.metrics.ScanTimings;
+import timber.log.Timber;
+
+/**
+ * Resolves the API host and opens a pooled TLS connection to it ahead of the first scan,
+ * so the first {@link Api#getByCode} doesn't pay for DNS, TCP and TLS handshakes.
+ * The time a warm up takes, which is what it saves the next lookup, is recorded as {@link ScanTimings.Stage#WARM_UP}.
+ * <p/>
+ * The pool can't be asked about a single host, so a connection the {@link ApiConnectionTracker} saw used within
+ * {@link #IDLE_CONNECTION_MILLIS} is taken to be still open.
+ */
+@Singleton
+public class ConnectionWarmer {
+    private static final long MIN_INTERVAL_MILLIS = TimeUnit.SECONDS.toMillis(30);
+    //servers drop idle keep-alive connections well before the client side pool would
+    private static final long IDLE_CONNECTION_MILLIS = TimeUnit.SECONDS.toMillis(60);
+
+    private final OkHttpClient client;
+    private final CachingDns dns;
+    private final HttpUrl apiUrl;
+    private final ApiConnectionTracker connectionTracker;
+    private final ScanTimings scanTimings;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    //System#nanoTime() of the last warm up, 0 if there was none
+    private long lastWarmUp;
+
+    @Inject
+    public ConnectionWarmer(OkHttpClient client, CachingDns dns, HttpUrl apiUrl, ApiConnectionTracker connectionTracker,
+                            ScanTimings scanTimings) {
+        this.client = client;
+        this.dns = dns;
+        this.apiUrl = apiUrl;
+        this.connectionTracker = connectionTracker;
+        this.scanTimings = scanTimings;
+    }
+
+    public void warmUp() {
+        long now = System.nanoTime();
+        if (lastWarmUp != 0 && now - lastWarmUp < TimeUnit.MILLISECONDS.toNanos(MIN_INTERVAL_MILLIS)) {
+            return;
+        }
+        lastWarmUp = now;
+
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (hasIdleApiConnection()) {
+                    return;
+                }
+                long start = System.nanoTime();
+                try {
+                    dns.lookup(apiUrl.host());
+                    Request request = new Request.Builder()
+                            .url(apiUrl)
+                            .head()
+                            .build();
+                    Response response = client.newCall(request).execute();
+                    response.body().close();
+                    scanTimings.record(ScanTimings.Stage.WARM_UP, start);
+                } catch (IOException e) {
+                    Timber.d("Connection warm up failed: " + e.getMessage());
+                }
+            }
+        });
+    }
+
+    private boolean hasIdleApiConnection() {
+        long lastExchange = connectionTracker.getLastExchange();
+        return lastExchange != 0
+                && System.nanoTime() - lastExchange < TimeUnit.MILLISECONDS.toNanos(IDLE_CONNECTION_MILLIS);
+    }
+}
@@ -0,0 +1,56 @@
+package pl.pola_app.network;
+
+import com.squareup.okhttp.MediaType;
+import com.squareup.okhttp.RequestBody;
+import com.squareup.okhttp.ResponseBody;
+
+import java.io.IOException;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+
+import pl.pola_app.model.SearchResult;
+import pl.pola_app.storage.ProductRecordCodec;
+import retrofit.Converter;
+
+/**
+ * Decodes {@link SearchResult} bodies sent as {@link #CONTENT_TYPE}, the {@link ProductRecordCodec} record the offline
+ * snapshot uses, straight into the model. Anything else, including JSON answers from servers that don't offer the
+ * binary format, goes to the delegate.
+ */
+public class ProductWireConverterFactory extends Converter.Factory {
+    public static final String CONTENT_TYPE = "application/x-pola-product";
+    /** Binary records preferred, JSON still accepted. */
+    public static final String ACCEPT = CONTENT_TYPE + ", application/json;q=0.9";
+
+    private final Converter.Factory delegate;
+
+    public ProductWireConverterFactory(Converter.Factory delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public Converter<ResponseBody, ?> fromResponseBody(Type type, Annotation[] annotations) {
+        final Converter<ResponseBody, ?> converter = delegate.fromResponseBody(type, annotations);
+        if (type != SearchResult.class || converter == null) {
+            return converter;
+        }
+        return new Converter<ResponseBody, Object>() {
+            @Override
+            public Object convert(ResponseBody value) throws IOException {
+                if (isProductRecord(value.contentType())) {
+                    return ProductRecordCodec.decode(value.bytes());
+                }
+                return converter.convert(value);
+            }
+        };
+    }
+
+    @Override
+    public Converter<?, RequestBody> toRequestBody(Type type, Annotation[] annotations) {
+        return delegate.toRequestBody(type, annotations);
+    }
+
+    private static boolean isProductRecord(MediaType mediaType) {
+        return mediaType != null && CONTENT_TYPE.equals(mediaType.type() + "/" + mediaType.subtype());
+    }
+}
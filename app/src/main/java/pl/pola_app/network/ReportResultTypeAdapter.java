@@ -0,0 +1,104 @@
+package pl.pola_app.network;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import pl.pola_app.model.ReportResult;
+
+import static pl.pola_app.network.JsonValues.readInteger;
+import static pl.pola_app.network.JsonValues.readString;
+
+/**
+ * Streaming {@link ReportResult} adapter, see {@link SearchResultTypeAdapter}.
+ */
+public class ReportResultTypeAdapter extends TypeAdapter<ReportResult> {
+
+    @Override
+    public void write(JsonWriter out, ReportResult value) throws IOException {
+        if (value == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginObject();
+        out.name("id").value(value.id);
+        if (value.signed_requests != null) {
+            out.name("signed_requests").beginArray();
+            for (List<String> request : value.signed_requests) {
+                writeStrings(out, request);
+            }
+            out.endArray();
+        }
+        out.endObject();
+    }
+
+    @Override
+    public ReportResult read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        ReportResult result = new ReportResult();
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "id":
+                    result.id = readInteger(in);
+                    break;
+                case "signed_requests":
+                    result.signed_requests = readSignedRequests(in);
+                    break;
+                default:
+                    in.skipValue();
+                    break;
+            }
+        }
+        in.endObject();
+        return result;
+    }
+
+    private static List<List<String>> readSignedRequests(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        List<List<String>> requests = new ArrayList<>();
+        in.beginArray();
+        while (in.hasNext()) {
+            requests.add(readStrings(in));
+        }
+        in.endArray();
+        return requests;
+    }
+
+    private static List<String> readStrings(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        List<String> strings = new ArrayList<>(2);
+        in.beginArray();
+        while (in.hasNext()) {
+            strings.add(readString(in));
+        }
+        in.endArray();
+        return strings;
+    }
+
+    private static void writeStrings(JsonWriter out, List<String> strings) throws IOException {
+        if (strings == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginArray();
+        for (String string : strings) {
+            out.value(string);
+        }
+        out.endArray();
+    }
+}
@@ -0,0 +1,109 @@
+package pl.pola_app.network;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+
+import pl.pola_app.model.SearchResult;
+
+import static pl.pola_app.network.JsonValues.readInteger;
+import static pl.pola_app.network.JsonValues.readString;
+
+/**
+ * Streaming {@link SearchResult} adapter, parses get_by_code answers without reflection.
+ * Keep in sync with the fields of {@link SearchResult}.
+ */
+public class SearchResultTypeAdapter extends TypeAdapter<SearchResult> {
+
+    @Override
+    public void write(JsonWriter out, SearchResult value) throws IOException {
+        if (value == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginObject();
+        out.name("product_id").value(value.product_id);
+        out.name("code").value(value.code);
+        out.name("name").value(value.name);
+        out.name("card_type").value(value.card_type);
+        out.name("plScore").value(value.plScore);
+        out.name("altText").value(value.altText);
+        out.name("plCapital").value(value.plCapital);
+        out.name("plWorkers").value(value.plWorkers);
+        out.name("plRnD").value(value.plRnD);
+        out.name("plRegistered").value(value.plRegistered);
+        out.name("plNotGlobEnt").value(value.plNotGlobEnt);
+        out.name("description").value(value.description);
+        out.name("report_text").value(value.report_text);
+        out.name("report_button_text").value(value.report_button_text);
+        out.name("report_button_type").value(value.report_button_type);
+        out.endObject();
+    }
+
+    @Override
+    public SearchResult read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        SearchResult result = new SearchResult();
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "product_id":
+                    result.product_id = readInteger(in);
+                    break;
+                case "code":
+                    result.code = readString(in);
+                    break;
+                case "name":
+                    result.name = readString(in);
+                    break;
+                case "card_type":
+                    result.card_type = readString(in);
+                    break;
+                case "plScore":
+                    result.plScore = readInteger(in);
+                    break;
+                case "altText":
+                    result.altText = readString(in);
+                    break;
+                case "plCapital":
+                    result.plCapital = readInteger(in);
+                    break;
+                case "plWorkers":
+                    result.plWorkers = readInteger(in);
+                    break;
+                case "plRnD":
+                    result.plRnD = readInteger(in);
+                    break;
+                case "plRegistered":
+                    result.plRegistered = readInteger(in);
+                    break;
+                case "plNotGlobEnt":
+                    result.plNotGlobEnt = readInteger(in);
+                    break;
+                case "description":
+                    result.description = readString(in);
+                    break;
+                case "report_text":
+                    result.report_text = readString(in);
+                    break;
+                case "report_button_text":
+                    result.report_button_text = readString(in);
+                    break;
+                case "report_button_type":
+                    result.report_button_type = readString(in);
+                    break;
+                default:
+                    in.skipValue();
+                    break;
+            }
+        }
+        in.endObject();
+        return result;
+    }
+}
@@ -0,0 +1,48 @@
+package pl.pola_app.network;
+
+import com.squareup.okhttp.RequestBody;
+import com.squareup.okhttp.ResponseBody;
+
+import java.io.IOException;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+
+import pl.pola_app.metrics.ScanTimings;
+import retrofit.Converter;
+
+/**
+ * Records how long response bodies take to parse as {@link ScanTimings.Stage#PARSE}.
+ */
+public class TimingConverterFactory extends Converter.Factory {
+    private final Converter.Factory delegate;
+    private final ScanTimings scanTimings;
+
+    public TimingConverterFactory(Converter.Factory delegate, ScanTimings scanTimings) {
+        this.delegate = delegate;
+        this.scanTimings = scanTimings;
+    }
+
+    @Override
+    public Converter<ResponseBody, ?> fromResponseBody(Type type, Annotation[] annotations) {
+        final Converter<ResponseBody, ?> converter = delegate.fromResponseBody(type, annotations);
+        if (converter == null) {
+            return null;
+        }
+        return new Converter<ResponseBody, Object>() {
+            @Override
+            public Object convert(ResponseBody value) throws IOException {
+                long start = System.nanoTime();
+                try {
+                    return converter.convert(value);
+                } finally {
+                    scanTimings.record(ScanTimings.Stage.PARSE, start);
+                }
+            }
+        };
+    }
+
+    @Override
+    public Converter<?, RequestBody> toRequestBody(Type type, Annotation[] annotations) {
+        return delegate.toRequestBody(type, annotations);
+    }
+}
@@ -0,0 +1,20 @@
+package pl.pola_app.network;
+
+import com.google.gson.JsonObject;
+import com.squareup.okhttp.RequestBody;
+
+import retrofit.Call;
+import retrofit.http.Body;
+import retrofit.http.Headers;
+import retrofit.http.PUT;
+import retrofit.http.Url;
+
+/**
+ * Report photo uploads to the pre-signed S3 urls the API hands out, kept apart from {@link Api} so they
+ * don't go through the HTTP cache or queue up behind barcode lookups.
+ */
+public interface UploadApi {
+    @Headers({"x-amz-acl: public-read", "Content-Type: image/*"})
+    @PUT
+    Call<JsonObject> sendReportImage(@Url String url, @Body RequestBody file);
+}
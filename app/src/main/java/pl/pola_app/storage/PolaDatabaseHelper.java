@@ -0,0 +1,28 @@
+package pl.pola_app.storage;
+
+import android.content.Context;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+
+public class PolaDatabaseHelper extends SQLiteOpenHelper {
+    private static final String DATABASE_NAME = "pola.db";
+    private static final int DATABASE_VERSION = 2;
+
+    public PolaDatabaseHelper(Context context) {
+        super(context, DATABASE_NAME, null, DATABASE_VERSION);
+    }
+
+    @Override
+    public void onCreate(SQLiteDatabase db) {
+        ProductCache.createTable(db);
+        ScanHistory.createTable(db);
+    }
+
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        //Everything stored here can be fetched again, so just start from scratch
+        ProductCache.dropTable(db);
+        ScanHistory.dropTable(db);
+        onCreate(db);
+    }
+}
@@ -0,0 +1,140 @@
+package pl.pola_app.storage;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+
+import java.util.concurrent.TimeUnit;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import pl.pola_app.model.SearchResult;
+import timber.log.Timber;
+
+/**
+ * Disk cache of get_by_code answers keyed by barcode.
+ * Entries older than {@link #TTL_MILLIS} are still returned but marked as stale so the caller can revalidate them,
+ * least recently used entries are evicted once there is more than {@link #MAX_ENTRIES} of them.
+ * Hits disk, so it should never be called from the UI thread.
+ */
+@Singleton
+public class ProductCache {
+    public static final long TTL_MILLIS = TimeUnit.DAYS.toMillis(1);
+    public static final int MAX_ENTRIES = 2000;
+
+    private static final String TABLE = "products";
+    private static final String COLUMN_CODE = "code";
+    private static final String COLUMN_BODY = "body";
+    private static final String COLUMN_FETCHED_AT = "fetched_at";
+    private static final String COLUMN_ACCESSED_AT = "accessed_at";
+
+    public static class Entry {
+        public final SearchResult searchResult;
+        public final boolean stale;
+
+        Entry(SearchResult searchResult, boolean stale) {
+            this.searchResult = searchResult;
+            this.stale = stale;
+        }
+    }
+
+    private final PolaDatabaseHelper databaseHelper;
+    private final Gson gson;
+
+    @Inject
+    public ProductCache(PolaDatabaseHelper databaseHelper, Gson gson) {
+        this.databaseHelper = databaseHelper;
+        this.gson = gson;
+    }
+
+    static void createTable(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + TABLE + " ("
+                + COLUMN_CODE + " TEXT PRIMARY KEY, "
+                + COLUMN_BODY + " TEXT NOT NULL, "
+                + COLUMN_FETCHED_AT + " INTEGER NOT NULL, "
+                + COLUMN_ACCESSED_AT + " INTEGER NOT NULL)");
+        db.execSQL("CREATE INDEX " + TABLE + "_" + COLUMN_ACCESSED_AT + " ON " + TABLE + " (" + COLUMN_ACCESSED_AT + ")");
+    }
+
+    static void dropTable(SQLiteDatabase db) {
+        db.execSQL("DROP TABLE IF EXISTS " + TABLE);
+    }
+
+    public Entry get(String code) {
+        return read(code, true);
+    }
+
+    /**
+     * Like {@link #get(String)}, but doesn't count as a use of the entry, so it doesn't keep it from being evicted.
+     */
+    public Entry peek(String code) {
+        return read(code, false);
+    }
+
+    private Entry read(String code, boolean touch) {
+        if (code == null) {
+            return null;
+        }
+        SQLiteDatabase db = databaseHelper.getWritableDatabase();
+        String body;
+        long fetchedAt;
+        Cursor cursor = db.query(TABLE, new String[]{COLUMN_BODY, COLUMN_FETCHED_AT},
+                COLUMN_CODE + " = ?", new String[]{code}, null, null, null);
+        try {
+            if (!cursor.moveToFirst()) {
+                return null;
+            }
+            body = cursor.getString(0);
+            fetchedAt = cursor.getLong(1);
+        } finally {
+            cursor.close();
+        }
+
+        SearchResult searchResult;
+        try {
+            searchResult = gson.fromJson(body, SearchResult.class);
+        } catch (JsonParseException e) {
+            Timber.w(e, "Dropping unreadable cache entry for " + code);
+            db.delete(TABLE, COLUMN_CODE + " = ?", new String[]{code});
+            return null;
+        }
+
+        long now = System.currentTimeMillis();
+        if (touch) {
+            ContentValues values = new ContentValues();
+            values.put(COLUMN_ACCESSED_AT, now);
+            db.update(TABLE, values, COLUMN_CODE + " = ?", new String[]{code});
+        }
+
+        return new Entry(searchResult, now - fetchedAt > TTL_MILLIS);
+    }
+
+    public void put(SearchResult searchResult) {
+        if (searchResult == null || searchResult.code == null) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        ContentValues values = new ContentValues();
+        values.put(COLUMN_CODE, searchResult.code);
+        values.put(COLUMN_BODY, gson.toJson(searchResult));
+        values.put(COLUMN_FETCHED_AT, now);
+        values.put(COLUMN_ACCESSED_AT, now);
+
+        SQLiteDatabase db = databaseHelper.getWritableDatabase();
+        db.insertWithOnConflict(TABLE, null, values, SQLiteDatabase.CONFLICT_REPLACE);
+        trim(db);
+    }
+
+    private void trim(SQLiteDatabase db) {
+        long overflow = DatabaseUtils.queryNumEntries(db, TABLE) - MAX_ENTRIES;
+        if (overflow > 0) {
+            db.execSQL("DELETE FROM " + TABLE + " WHERE " + COLUMN_CODE + " IN (SELECT " + COLUMN_CODE
+                    + " FROM " + TABLE + " ORDER BY " + COLUMN_ACCESSED_AT + " ASC LIMIT " + overflow + ")");
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package pl.pola_app.storage;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import pl.pola_app.model.SearchResult;
+
+/**
+ * Compact binary form of a single {@link SearchResult}: an int bitmask telling which fields are present
+ * followed by the present fields in declaration order.
+ */
+public final class ProductRecordCodec {
+    private static final int PRODUCT_ID = 1;
+    private static final int CODE = 1 << 1;
+    private static final int NAME = 1 << 2;
+    private static final int CARD_TYPE = 1 << 3;
+    private static final int PL_SCORE = 1 << 4;
+    private static final int ALT_TEXT = 1 << 5;
+    private static final int PL_CAPITAL = 1 << 6;
+    private static final int PL_WORKERS = 1 << 7;
+    private static final int PL_RND = 1 << 8;
+    private static final int PL_REGISTERED = 1 << 9;
+    private static final int PL_NOT_GLOB_ENT = 1 << 10;
+    private static final int DESCRIPTION = 1 << 11;
+    private static final int REPORT_TEXT = 1 << 12;
+    private static final int REPORT_BUTTON_TEXT = 1 << 13;
+    private static final int REPORT_BUTTON_TYPE = 1 << 14;
+
+    private ProductRecordCodec() {
+    }
+
+    public static byte[] encode(SearchResult searchResult) {
+        int mask = 0;
+        mask |= searchResult.product_id != null ? PRODUCT_ID : 0;
+        mask |= searchResult.code != null ? CODE : 0;
+        mask |= searchResult.name != null ? NAME : 0;
+        mask |= searchResult.card_type != null ? CARD_TYPE : 0;
+        mask |= searchResult.plScore != null ? PL_SCORE : 0;
+        mask |= searchResult.altText != null ? ALT_TEXT : 0;
+        mask |= searchResult.plCapital != null ? PL_CAPITAL : 0;
+        mask |= searchResult.plWorkers != null ? PL_WORKERS : 0;
+        mask |= searchResult.plRnD != null ? PL_RND : 0;
+        mask |= searchResult.plRegistered != null ? PL_REGISTERED : 0;
+        mask |= searchResult.plNotGlobEnt != null ? PL_NOT_GLOB_ENT : 0;
+        mask |= searchResult.description != null ? DESCRIPTION : 0;
+        mask |= searchResult.report_text != null ? REPORT_TEXT : 0;
+        mask |= searchResult.report_button_text != null ? REPORT_BUTTON_TEXT : 0;
+        mask |= searchResult.report_button_type != null ? REPORT_BUTTON_TYPE : 0;
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.writeInt(mask);
+            if (searchResult.product_id != null) out.writeInt(searchResult.product_id);
+            if (searchResult.code != null) out.writeUTF(searchResult.code);
+            if (searchResult.name != null) out.writeUTF(searchResult.name);
+            if (searchResult.card_type != null) out.writeUTF(searchResult.card_type);
+            if (searchResult.plScore != null) out.writeInt(searchResult.plScore);
+            if (searchResult.altText != null) out.writeUTF(searchResult.altText);
+            if (searchResult.plCapital != null) out.writeInt(searchResult.plCapital);
+            if (searchResult.plWorkers != null) out.writeInt(searchResult.plWorkers);
+            if (searchResult.plRnD != null) out.writeInt(searchResult.plRnD);
+            if (searchResult.plRegistered != null) out.writeInt(searchResult.plRegistered);
+            if (searchResult.plNotGlobEnt != null) out.writeInt(searchResult.plNotGlobEnt);
+            if (searchResult.description != null) out.writeUTF(searchResult.description);
+            if (searchResult.report_text != null) out.writeUTF(searchResult.report_text);
+            if (searchResult.report_button_text != null) out.writeUTF(searchResult.report_button_text);
+            if (searchResult.report_button_type != null) out.writeUTF(searchResult.report_button_type);
+        } catch (IOException e) {
+            //ByteArrayOutputStream doesn't throw
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    public static SearchResult decode(byte[] record) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(record));
+        int mask = in.readInt();
+        SearchResult searchResult = new SearchResult();
+        if ((mask & PRODUCT_ID) != 0) searchResult.product_id = in.readInt();
+        if ((mask & CODE) != 0) searchResult.code = in.readUTF();
+        if ((mask & NAME) != 0) searchResult.name = in.readUTF();
+        if ((mask & CARD_TYPE) != 0) searchResult.card_type = in.readUTF();
+        if ((mask & PL_SCORE) != 0) searchResult.plScore = in.readInt();
+        if ((mask & ALT_TEXT) != 0) searchResult.altText = in.readUTF();
+        if ((mask & PL_CAPITAL) != 0) searchResult.plCapital = in.readInt();
+        if ((mask & PL_WORKERS) != 0) searchResult.plWorkers = in.readInt();
+        if ((mask & PL_RND) != 0) searchResult.plRnD = in.readInt();
+        if ((mask & PL_REGISTERED) != 0) searchResult.plRegistered = in.readInt();
+        if ((mask & PL_NOT_GLOB_ENT) != 0) searchResult.plNotGlobEnt = in.readInt();
+        if ((mask & DESCRIPTION) != 0) searchResult.description = in.readUTF();
+        if ((mask & REPORT_TEXT) != 0) searchResult.report_text = in.readUTF();
+        if ((mask & REPORT_BUTTON_TEXT) != 0) searchResult.report_button_text = in.readUTF();
+        if ((mask & REPORT_BUTTON_TYPE) != 0) searchResult.report_button_type = in.readUTF();
+        return searchResult;
+    }
+}
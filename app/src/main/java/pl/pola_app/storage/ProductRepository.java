@@ -0,0 +1,125 @@
+package pl.pola_app.storage;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import pl.pola_app.model.Product;
+import pl.pola_app.model.SearchResult;
+import timber.log.Timber;
+
+/**
+ * Products shown in the app keyed by the barcode they were scanned with, so screens can pass the code around and
+ * share one instance instead of copying products into bundles. Instances handed out are shared, don't modify them.
+ * <p/>
+ * Recently used products are kept in memory, older ones and everything after the process was killed are read back
+ * from {@link ProductCache} or {@link ProductSnapshot}.
+ */
+@Singleton
+public class ProductRepository {
+    private static final int MAX_IN_MEMORY = 500;
+
+    public interface Callback {
+        /**
+         * @param product null if the product is not known any more
+         */
+        void onProductLoaded(Product product);
+    }
+
+    private final ProductCache productCache;
+    private final ProductSnapshot productSnapshot;
+    private final ExecutorService diskExecutor = Executors.newSingleThreadExecutor();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    private final Map<String, Product> products = new LinkedHashMap<String, Product>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Product> eldest) {
+            return size() > MAX_IN_MEMORY;
+        }
+    };
+
+    @Inject
+    public ProductRepository(ProductCache productCache, ProductSnapshot productSnapshot) {
+        this.productCache = productCache;
+        this.productSnapshot = productSnapshot;
+    }
+
+    public synchronized void put(String code, Product product) {
+        if (code != null && product != null && !product.placeholder) {
+            products.put(code, product);
+        }
+    }
+
+    /**
+     * @return the product if it is in memory, null otherwise, see {@link #load(String, Callback)}
+     */
+    public synchronized Product get(String code) {
+        return code == null ? null : products.get(code);
+    }
+
+    /**
+     * Delivers the product on the main thread, synchronously if it is in memory.
+     */
+    public void load(final String code, final Callback callback) {
+        Product product = get(code);
+        if (product != null || code == null) {
+            callback.onProductLoaded(product);
+            return;
+        }
+        diskExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                final Product product = find(code);
+                mainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        callback.onProductLoaded(product);
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Like {@link #load(String, Callback)}, but goes to disk on the calling thread, so never call it on the UI thread.
+     */
+    public Product find(String code) {
+        return read(code, true);
+    }
+
+    /**
+     * Like {@link #find(String)}, but doesn't mark the product as used in {@link ProductCache}, for reading many
+     * products that are only listed.
+     */
+    public Product peek(String code) {
+        return read(code, false);
+    }
+
+    private Product read(String code, boolean touch) {
+        Product product = get(code);
+        if (product != null || code == null) {
+            return product;
+        }
+        SearchResult stored;
+        try {
+            ProductCache.Entry entry = touch ? productCache.get(code) : productCache.peek(code);
+            stored = entry != null ? entry.searchResult : productSnapshot.find(code);
+        } catch (RuntimeException e) {
+            Timber.w(e, "Can't read product " + code);
+            return null;
+        }
+        if (stored == null) {
+            return null;
+        }
+        product = Product.from(code, stored);
+        put(code, product);
+        return product;
+    }
+}
@@ -0,0 +1,343 @@
+package pl.pola_app.storage;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.SortedMap;
+
+import pl.pola_app.model.SearchResult;
+import timber.log.Timber;
+
+/**
+ * Offline copy of the Pola product database, memory mapped and searched in place.
+ * <p/>
+ * File layout (big endian):
+ * <pre>
+ * header:  int magic, int format version, long data version, int count
+ * index:   count * (long key, int offset, int length), sorted by key
+ * payload: {@link ProductRecordCodec} records, offsets are relative to the payload start
+ * </pre>
+ * Keys are numeric barcodes with their digit count packed into the low bits, see {@link #keyOf(String)}.
+ * All methods do disk I/O and should be called off the UI thread.
+ */
+public class ProductSnapshot {
+    static final int MAGIC = 0x504F4C41; //"POLA"
+    static final int FORMAT_VERSION = 1;
+    static final int HEADER_SIZE = 4 + 4 + 8 + 4;
+    static final int INDEX_ENTRY_SIZE = 8 + 4 + 4;
+
+    private static final int MAX_CODE_LENGTH = 17;
+
+    private final File file;
+    private final File attemptFile;
+    private Mapping mapping;
+    private boolean opened;
+
+    public ProductSnapshot(File file) {
+        this.file = file;
+        this.attemptFile = new File(file.getPath() + ".attempt");
+    }
+
+    /**
+     * @return -1 when the code can't be stored in a snapshot (empty, too long or not numeric)
+     */
+    public static long keyOf(String code) {
+        if (code == null || code.length() == 0 || code.length() > MAX_CODE_LENGTH) {
+            return -1;
+        }
+        long value = 0;
+        for (int i = 0; i < code.length(); i++) {
+            char c = code.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        //keep the length so that e.g. EAN-8 and zero padded EAN-13 don't collide
+        return (value << 5) | code.length();
+    }
+
+    /**
+     * @return 0 when there is no snapshot on the device yet
+     */
+    public long getVersion() {
+        Mapping current = mapping();
+        return current == null ? 0 : current.version;
+    }
+
+    public long getLastSynced() {
+        return file.lastModified();
+    }
+
+    public void markSynced() {
+        if (file.exists() && !file.setLastModified(System.currentTimeMillis())) {
+            Timber.w("Can't touch " + file);
+        }
+    }
+
+    /**
+     * @return when a sync was last started, successful or not, 0 if never
+     */
+    public long getLastAttempted() {
+        return attemptFile.lastModified();
+    }
+
+    public void markAttempted() {
+        try {
+            if (!attemptFile.createNewFile() && !attemptFile.setLastModified(System.currentTimeMillis())) {
+                Timber.w("Can't touch " + attemptFile);
+            }
+        } catch (IOException e) {
+            Timber.w(e, "Can't create " + attemptFile);
+        }
+    }
+
+    public SearchResult find(String code) {
+        long key = keyOf(code);
+        Mapping current = mapping();
+        if (key < 0 || current == null) {
+            return null;
+        }
+        int index = current.indexOf(key);
+        if (index < 0) {
+            return null;
+        }
+        try {
+            return ProductRecordCodec.decode(current.recordAt(index));
+        } catch (IOException e) {
+            Timber.w(e, "Corrupted snapshot record for " + code);
+            return null;
+        }
+    }
+
+    /**
+     * Replaces the snapshot with a full copy streamed from the server.
+     */
+    public void replace(InputStream source) throws IOException {
+        File tmp = new File(file.getPath() + ".tmp");
+        OutputStream out = new BufferedOutputStream(new FileOutputStream(tmp));
+        try {
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = source.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+        } finally {
+            out.close();
+        }
+        install(tmp);
+    }
+
+    /**
+     * Merges changes into the current snapshot and installs the result as {@code version}.
+     *
+     * @param changes encoded records by {@link #keyOf(String)}, a null record removes the product
+     */
+    public void applyDelta(long version, SortedMap<Long, byte[]> changes) throws IOException {
+        Mapping current = mapping();
+        Writer writer = new Writer(new File(file.getPath() + ".payload"));
+        try {
+            Iterator<Map.Entry<Long, byte[]>> iterator = changes.entrySet().iterator();
+            Map.Entry<Long, byte[]> change = iterator.hasNext() ? iterator.next() : null;
+            int count = current == null ? 0 : current.count;
+            int i = 0;
+            while (i < count || change != null) {
+                long existingKey = i < count ? current.keyAt(i) : Long.MAX_VALUE;
+                if (change == null || existingKey < change.getKey()) {
+                    writer.add(existingKey, current.recordAt(i));
+                    i++;
+                    continue;
+                }
+                if (existingKey == change.getKey()) {
+                    i++;
+                }
+                if (change.getValue() != null) {
+                    writer.add(change.getKey(), change.getValue());
+                }
+                change = iterator.hasNext() ? iterator.next() : null;
+            }
+        } finally {
+            writer.closePayload();
+        }
+
+        File tmp = new File(file.getPath() + ".tmp");
+        writer.writeTo(tmp, version);
+        install(tmp);
+    }
+
+    private void install(File tmp) throws IOException {
+        //fails on a broken download before it replaces anything
+        Mapping.open(tmp);
+        synchronized (this) {
+            if (!tmp.renameTo(file)) {
+                throw new IOException("Can't move " + tmp + " to " + file);
+            }
+            mapping = Mapping.open(file);
+            opened = true;
+        }
+    }
+
+    private synchronized Mapping mapping() {
+        if (!opened) {
+            opened = true;
+            if (file.exists()) {
+                try {
+                    mapping = Mapping.open(file);
+                } catch (IOException e) {
+                    Timber.w(e, "Dropping unreadable snapshot");
+                    if (!file.delete()) {
+                        Timber.w("Can't delete " + file);
+                    }
+                }
+            }
+        }
+        return mapping;
+    }
+
+    static final class Mapping {
+        final ByteBuffer buffer;
+        final long version;
+        final int count;
+        final int payloadStart;
+
+        private Mapping(ByteBuffer buffer, long version, int count) {
+            this.buffer = buffer;
+            this.version = version;
+            this.count = count;
+            this.payloadStart = HEADER_SIZE + count * INDEX_ENTRY_SIZE;
+        }
+
+        static Mapping open(File file) throws IOException {
+            RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+            try {
+                FileChannel channel = randomAccessFile.getChannel();
+                long size = channel.size();
+                if (size < HEADER_SIZE || size > Integer.MAX_VALUE) {
+                    throw new IOException("Invalid snapshot size " + size);
+                }
+                ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+                if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != FORMAT_VERSION) {
+                    throw new IOException("Not a snapshot file");
+                }
+                long version = buffer.getLong(8);
+                int count = buffer.getInt(16);
+                if (count < 0 || HEADER_SIZE + (long) count * INDEX_ENTRY_SIZE > size) {
+                    throw new IOException("Truncated snapshot index");
+                }
+                return new Mapping(buffer, version, count);
+            } finally {
+                //the mapping stays valid after the channel is closed
+                randomAccessFile.close();
+            }
+        }
+
+        long keyAt(int index) {
+            return buffer.getLong(HEADER_SIZE + index * INDEX_ENTRY_SIZE);
+        }
+
+        int indexOf(long key) {
+            int low = 0;
+            int high = count - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                long midKey = keyAt(mid);
+                if (midKey < key) {
+                    low = mid + 1;
+                } else if (midKey > key) {
+                    high = mid - 1;
+                } else {
+                    return mid;
+                }
+            }
+            return -1;
+        }
+
+        byte[] recordAt(int index) throws IOException {
+            int entry = HEADER_SIZE + index * INDEX_ENTRY_SIZE;
+            int offset = buffer.getInt(entry + 8);
+            int length = buffer.getInt(entry + 12);
+            if (offset < 0 || length < 0 || (long) payloadStart + offset + length > buffer.capacity()) {
+                throw new IOException("Record " + index + " out of bounds");
+            }
+            byte[] record = new byte[length];
+            ByteBuffer view = buffer.duplicate();
+            view.position(payloadStart + offset);
+            view.get(record);
+            return record;
+        }
+    }
+
+    /**
+     * Collects records in key order into a side payload file, then writes the final header and index in front.
+     */
+    private static final class Writer {
+        private final File payloadFile;
+        private final OutputStream payload;
+        private long[] keys = new long[1024];
+        private int[] offsets = new int[1024];
+        private int[] lengths = new int[1024];
+        private int count;
+        private int payloadSize;
+
+        Writer(File payloadFile) throws IOException {
+            this.payloadFile = payloadFile;
+            this.payload = new BufferedOutputStream(new FileOutputStream(payloadFile));
+        }
+
+        void add(long key, byte[] record) throws IOException {
+            if (count == keys.length) {
+                keys = Arrays.copyOf(keys, count * 2);
+                offsets = Arrays.copyOf(offsets, count * 2);
+                lengths = Arrays.copyOf(lengths, count * 2);
+            }
+            keys[count] = key;
+            offsets[count] = payloadSize;
+            lengths[count] = record.length;
+            count++;
+            payload.write(record);
+            payloadSize += record.length;
+        }
+
+        void closePayload() throws IOException {
+            payload.close();
+        }
+
+        void writeTo(File target, long version) throws IOException {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(target)));
+            InputStream in = new FileInputStream(payloadFile);
+            try {
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT_VERSION);
+                out.writeLong(version);
+                out.writeInt(count);
+                for (int i = 0; i < count; i++) {
+                    out.writeLong(keys[i]);
+                    out.writeInt(offsets[i]);
+                    out.writeInt(lengths[i]);
+                }
+                byte[] buffer = new byte[8192];
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    out.write(buffer, 0, read);
+                }
+            } finally {
+                in.close();
+                out.close();
+                if (!payloadFile.delete()) {
+                    Timber.w("Can't delete " + payloadFile);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package pl.pola_app.storage;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import pl.pola_app.model.Product;
+import timber.log.Timber;
+
+/**
+ * Scanned barcodes with the time they were last scanned, newest first.
+ * Only codes are kept here, products are read back through {@link ProductRepository} when a page is loaded, so codes
+ * it doesn't know any more are skipped.
+ * All disk work runs on a background thread, pages are delivered on the main thread.
+ */
+@Singleton
+public class ScanHistory {
+    public static final int MAX_ENTRIES = 1000;
+
+    private static final String TABLE = "scan_history";
+    private static final String COLUMN_CODE = "code";
+    private static final String COLUMN_SCANNED_AT = "scanned_at";
+
+    public interface PageCallback {
+        void onPageLoaded(Page page);
+    }
+
+    public static class Page {
+        /** Codes the products were scanned with, in the same order. */
+        public final List<String> codes;
+        public final List<Product> products;
+        /** Pass both to {@link #loadPage} to get the next, older page. */
+        public final long oldestScannedAt;
+        public final long oldestRowId;
+        public final boolean last;
+
+        Page(List<String> codes, List<Product> products, long oldestScannedAt, long oldestRowId, boolean last) {
+            this.codes = codes;
+            this.products = products;
+            this.oldestScannedAt = oldestScannedAt;
+            this.oldestRowId = oldestRowId;
+            this.last = last;
+        }
+    }
+
+    private final PolaDatabaseHelper databaseHelper;
+    private final ProductRepository productRepository;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    @Inject
+    public ScanHistory(PolaDatabaseHelper databaseHelper, ProductRepository productRepository) {
+        this.databaseHelper = databaseHelper;
+        this.productRepository = productRepository;
+    }
+
+    static void createTable(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + TABLE + " ("
+                + COLUMN_CODE + " TEXT PRIMARY KEY, "
+                + COLUMN_SCANNED_AT + " INTEGER NOT NULL)");
+        db.execSQL("CREATE INDEX " + TABLE + "_" + COLUMN_SCANNED_AT + " ON " + TABLE + " (" + COLUMN_SCANNED_AT + ")");
+    }
+
+    static void dropTable(SQLiteDatabase db) {
+        db.execSQL("DROP TABLE IF EXISTS " + TABLE);
+    }
+
+    public void record(final String code) {
+        if (code == null) {
+            return;
+        }
+        final long now = System.currentTimeMillis();
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    ContentValues values = new ContentValues();
+                    values.put(COLUMN_CODE, code);
+                    values.put(COLUMN_SCANNED_AT, now);
+                    SQLiteDatabase db = databaseHelper.getWritableDatabase();
+                    db.insertWithOnConflict(TABLE, null, values, SQLiteDatabase.CONFLICT_REPLACE);
+                    trim(db);
+                } catch (RuntimeException e) {
+                    Timber.w(e, "Scan history write failed");
+                }
+            }
+        });
+    }
+
+    /**
+     * Loads up to {@code limit} products older than the last one of the previous page, pass {@link Long#MAX_VALUE}
+     * for both for the first page. Scans are ordered by time and then by row id, so codes scanned within the same
+     * millisecond aren't skipped between pages.
+     */
+    public void loadPage(final long beforeScannedAt, final long beforeRowId, final int limit,
+                         final PageCallback callback) {
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                final Page page = readPage(beforeScannedAt, beforeRowId, limit);
+                mainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        callback.onPageLoaded(page);
+                    }
+                });
+            }
+        });
+    }
+
+    private Page readPage(long beforeScannedAt, long beforeRowId, int limit) {
+        List<String> codes = new ArrayList<>(limit);
+        long oldestScannedAt = beforeScannedAt;
+        long oldestRowId = beforeRowId;
+        try {
+            String before = String.valueOf(beforeScannedAt);
+            Cursor cursor = databaseHelper.getReadableDatabase().query(TABLE,
+                    new String[]{COLUMN_CODE, COLUMN_SCANNED_AT, "rowid"},
+                    COLUMN_SCANNED_AT + " < ? OR (" + COLUMN_SCANNED_AT + " = ? AND rowid < ?)",
+                    new String[]{before, before, String.valueOf(beforeRowId)},
+                    null, null, COLUMN_SCANNED_AT + " DESC, rowid DESC", String.valueOf(limit));
+            try {
+                while (cursor.moveToNext()) {
+                    codes.add(cursor.getString(0));
+                    oldestScannedAt = cursor.getLong(1);
+                    oldestRowId = cursor.getLong(2);
+                }
+            } finally {
+                cursor.close();
+            }
+        } catch (RuntimeException e) {
+            Timber.w(e, "Scan history read failed");
+            return new Page(new ArrayList<String>(), new ArrayList<Product>(), beforeScannedAt, beforeRowId, true);
+        }
+
+        boolean last = codes.size() < limit;
+        List<Product> products = new ArrayList<>(codes.size());
+        //showing history doesn't count as using a product, so its cache entry isn't refreshed
+        for (Iterator<String> iterator = codes.iterator(); iterator.hasNext(); ) {
+            Product product = productRepository.peek(iterator.next());
+            if (product != null) {
+                products.add(product);
+            } else {
+                iterator.remove();
+            }
+        }
+        return new Page(codes, products, oldestScannedAt, oldestRowId, last);
+    }
+
+    private void trim(SQLiteDatabase db) {
+        long overflow = DatabaseUtils.queryNumEntries(db, TABLE) - MAX_ENTRIES;
+        if (overflow > 0) {
+            db.execSQL("DELETE FROM " + TABLE + " WHERE " + COLUMN_CODE + " IN (SELECT " + COLUMN_CODE
+                    + " FROM " + TABLE + " ORDER BY " + COLUMN_SCANNED_AT + " ASC LIMIT " + overflow + ")");
+        }
+    }
+}
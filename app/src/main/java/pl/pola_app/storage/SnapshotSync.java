@@ -0,0 +1,123 @@
+package pl.pola_app.storage;
+
+import com.squareup.okhttp.ResponseBody;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import pl.pola_app.model.SearchResult;
+import pl.pola_app.model.SnapshotDelta;
+import pl.pola_app.network.Api;
+import retrofit.Response;
+import timber.log.Timber;
+
+/**
+ * Keeps {@link ProductSnapshot} up to date: downloads the whole snapshot once, then only pulls deltas.
+ * Syncs are attempted at most every {@link #SYNC_INTERVAL_MILLIS}, failed ones included, so a server without the
+ * snapshot endpoints isn't asked again on every start.
+ */
+@Singleton
+public class SnapshotSync {
+    static final long SYNC_INTERVAL_MILLIS = TimeUnit.HOURS.toMillis(12);
+
+    private final Api api;
+    private final ProductSnapshot productSnapshot;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+    @Inject
+    public SnapshotSync(Api api, ProductSnapshot productSnapshot) {
+        this.api = api;
+        this.productSnapshot = productSnapshot;
+    }
+
+    public void syncIfNeeded() {
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                syncIfDue();
+            }
+        });
+    }
+
+    void syncIfDue() {
+        long lastSync = Math.max(productSnapshot.getLastSynced(), productSnapshot.getLastAttempted());
+        if (System.currentTimeMillis() - lastSync < SYNC_INTERVAL_MILLIS) {
+            return;
+        }
+        productSnapshot.markAttempted();
+        try {
+            sync();
+        } catch (IOException | RuntimeException e) {
+            Timber.w(e, "Snapshot sync failed");
+        }
+    }
+
+    private void sync() throws IOException {
+        long version = productSnapshot.getVersion();
+        if (version == 0) {
+            downloadFull();
+            return;
+        }
+
+        Response<SnapshotDelta> response = api.getSnapshotDelta(version).execute();
+        SnapshotDelta delta = response.body();
+        if (!response.isSuccess() || delta == null) {
+            Timber.w("Snapshot delta request failed: " + response.code());
+            return;
+        }
+        if (delta.full_required) {
+            downloadFull();
+            return;
+        }
+
+        if (delta.version != version) {
+            productSnapshot.applyDelta(delta.version, toChanges(delta));
+            Timber.d("Snapshot updated from " + version + " to " + delta.version);
+        }
+        productSnapshot.markSynced();
+    }
+
+    private void downloadFull() throws IOException {
+        Response<ResponseBody> response = api.getSnapshot().execute();
+        if (!response.isSuccess() || response.body() == null) {
+            Timber.w("Snapshot download failed: " + response.code());
+            return;
+        }
+        InputStream in = response.body().byteStream();
+        try {
+            productSnapshot.replace(in);
+        } finally {
+            in.close();
+        }
+        Timber.d("Snapshot downloaded, version " + productSnapshot.getVersion());
+    }
+
+    private static SortedMap<Long, byte[]> toChanges(SnapshotDelta delta) {
+        SortedMap<Long, byte[]> changes = new TreeMap<>();
+        if (delta.removed != null) {
+            for (String code : delta.removed) {
+                long key = ProductSnapshot.keyOf(code);
+                if (key >= 0) {
+                    changes.put(key, null);
+                }
+            }
+        }
+        if (delta.products != null) {
+            for (SearchResult product : delta.products) {
+                long key = ProductSnapshot.keyOf(product.code);
+                if (key >= 0) {
+                    changes.put(key, ProductRecordCodec.encode(product));
+                }
+            }
+        }
+        return changes;
+    }
+}
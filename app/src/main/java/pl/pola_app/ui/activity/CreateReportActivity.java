@@ -17,9 +17,6 @@ import android.widget.ImageView;
 import android.widget.LinearLayout;
 import android.widget.Toast;
 
-import com.crashlytics.android.answers.Answers;
-import com.crashlytics.android.answers.LevelEndEvent;
-import com.crashlytics.android.answers.LevelStartEvent;
 import com.google.gson.JsonObject;
 import com.squareup.okhttp.MediaType;
 import com.squareup.okhttp.RequestBody;
@@ -28,17 +25,22 @@ import java.io.File;
 import java.io.FileOutputStream;
 import java.util.ArrayList;
 
+import javax.inject.Inject;
+
 import butterknife.Bind;
 import butterknife.ButterKnife;
 import butterknife.OnClick;
 import pl.aprilapps.easyphotopicker.EasyImage;
-import pl.pola_app.BuildConfig;
 import pl.pola_app.PolaApplication;
 import pl.pola_app.R;
+import pl.pola_app.analytics.Analytics;
+import pl.pola_app.analytics.AnalyticsEvent;
+import pl.pola_app.helpers.SessionManager;
 import pl.pola_app.helpers.Utils;
 import pl.pola_app.model.Report;
 import pl.pola_app.model.ReportResult;
 import pl.pola_app.network.Api;
+import pl.pola_app.network.UploadApi;
 import pl.tajchert.nammu.Nammu;
 import pl.tajchert.nammu.PermissionCallback;
 import retrofit.Call;
@@ -59,6 +61,18 @@ public class CreateReportActivity extends Activity implements Callback<ReportRes
     private int numberOfImages;
     private Call<ReportResult> reportResultCall;
 
+    @Inject
+    Api api;
+
+    @Inject
+    UploadApi uploadApi;
+
+    @Inject
+    SessionManager sessionManager;
+
+    @Inject
+    Analytics analytics;
+
     @Bind(R.id.descripton_editText)
     EditText descriptionEditText;
     @Bind(R.id.linearImageViews)
@@ -71,6 +85,7 @@ public class CreateReportActivity extends Activity implements Callback<ReportRes
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_create_report);
         ButterKnife.bind(this);
+        PolaApplication.component(this).inject(this);
 
         if (getIntent() != null) {
             productId = getIntent().getStringExtra("productId");
@@ -78,21 +93,14 @@ public class CreateReportActivity extends Activity implements Callback<ReportRes
         setImageView(bitmaps);
         Nammu.init(this);
 
-        if (BuildConfig.USE_CRASHLYTICS) {
-            try {
-                Answers.getInstance().logLevelStart(new LevelStartEvent()
-                                .putLevelName("Report")
-                                .putCustomAttribute("Code", productId + "") //because can be null, ugly
-                                .putCustomAttribute("DeviceId", Utils.getSessionGuid(this))
-                );
-            } catch (Exception e) {
-                e.printStackTrace();
-            }
-        }
+        analytics.log(AnalyticsEvent.levelStart("Report")
+                .put("Code", productId + "") //because can be null, ugly
+                .put("DeviceId", sessionManager.getSessionGuid()));
     }
 
     @Override
     protected void onPause() {
+        analytics.flush();
         if (progressDialog != null && progressDialog.isShowing()) {
             progressDialog.cancel();
         }
@@ -194,22 +202,13 @@ public class CreateReportActivity extends Activity implements Callback<ReportRes
         } else {
             report = new Report(description, numberOfImages, MIME_TYPE, FILE_EXT);
         }
-        Api api = PolaApplication.retrofit.create(Api.class);
-        reportResultCall = api.createReport(Utils.getSessionGuid(this), report);
+        reportResultCall = api.createReport(sessionManager.getSessionGuid(), report);
         reportResultCall.enqueue(this);
 
         progressDialog = ProgressDialog.show(CreateReportActivity.this, "", getString(R.string.sending_image_dialog), true);
-        if (BuildConfig.USE_CRASHLYTICS) {
-            try {
-                Answers.getInstance().logLevelEnd(new LevelEndEvent()
-                                .putLevelName("Report")
-                                .putCustomAttribute("Code", productId + "")
-                                .putCustomAttribute("DeviceId", Utils.getSessionGuid(this))
-                );
-            } catch (Exception e) {
-                e.printStackTrace();
-            }
-        }
+        analytics.log(AnalyticsEvent.levelEnd("Report")
+                .put("Code", productId + "")
+                .put("DeviceId", sessionManager.getSessionGuid()));
     }
 
     @Override
@@ -262,10 +261,9 @@ public class CreateReportActivity extends Activity implements Callback<ReportRes
 
     private void sendImage(final String imagePath, String url) {
         numberOfImages++;
-        Api api = PolaApplication.retrofit.create(Api.class);
         File imageFile = new File(imagePath);
         RequestBody photoBody = RequestBody.create(MediaType.parse(MIME_TYPE), imageFile);
-        Call<JsonObject> reportResultCall = api.sendReportImage(url, photoBody);
+        Call<JsonObject> reportResultCall = uploadApi.sendReportImage(url, photoBody);
         reportResultCall.enqueue(new Callback<JsonObject>() {
             @Override
             public void onResponse(Response<JsonObject> response, Retrofit retrofit) {
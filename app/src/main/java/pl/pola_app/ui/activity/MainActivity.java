@@ -4,26 +4,24 @@ import android.app.FragmentManager;
 import android.app.FragmentTransaction;
 import android.content.Intent;
 import android.os.Bundle;
-import android.os.Handler;
 import android.support.v7.app.AppCompatActivity;
 import android.widget.Toast;
 
-import com.crashlytics.android.answers.Answers;
-import com.crashlytics.android.answers.ContentViewEvent;
-import com.crashlytics.android.answers.CustomEvent;
-import com.crashlytics.android.answers.SearchEvent;
 import com.squareup.otto.Bus;
 import com.squareup.otto.Subscribe;
 
 import javax.inject.Inject;
 
 import butterknife.ButterKnife;
-import pl.pola_app.BuildConfig;
 import pl.pola_app.PolaApplication;
 import pl.pola_app.R;
-import pl.pola_app.helpers.Utils;
+import pl.pola_app.analytics.Analytics;
+import pl.pola_app.analytics.AnalyticsEvent;
+import pl.pola_app.helpers.SessionManager;
+import pl.pola_app.metrics.ScanTimings;
+import pl.pola_app.model.Product;
 import pl.pola_app.model.SearchResult;
-import pl.pola_app.network.Api;
+import pl.pola_app.network.BarcodeLookup;
 import pl.pola_app.ui.event.ProductDetailsFragmentDismissedEvent;
 import pl.pola_app.ui.event.ProductItemClickedEvent;
 import pl.pola_app.ui.event.ReportButtonClickedEvent;
@@ -31,31 +29,30 @@ import pl.pola_app.ui.fragment.ProductDetailsFragment;
 import pl.pola_app.ui.fragment.ProductsListFragment;
 import pl.pola_app.ui.fragment.ScannerFragment;
 import pl.tajchert.nammu.Nammu;
-import retrofit.Call;
 import retrofit.Callback;
 import retrofit.Response;
 import retrofit.Retrofit;
 
 
-public class MainActivity extends AppCompatActivity implements Callback<SearchResult>, ScannerFragment.BarcodeScannedListener {
+public class MainActivity extends AppCompatActivity implements ScannerFragment.BarcodeScannedListener {
 
     @Inject
     Bus eventBus;
 
+    @Inject
+    BarcodeLookup barcodeLookup;
+
+    @Inject
+    SessionManager sessionManager;
+
+    @Inject
+    Analytics analytics;
+
+    @Inject
+    ScanTimings scanTimings;
+
     private ProductsListFragment productsListFragment;
     private ScannerFragment scannerFragment;
-    private int milisecondsBetweenExisting = 2000;//otherwise it will scan and vibrate few times a second
-    private Handler handlerScanner;
-    private Runnable runnableResumeScan = new Runnable() {
-        @Override
-        public void run() {
-            if (BuildConfig.USE_CRASHLYTICS) {
-                Answers.getInstance().logCustom(new CustomEvent("Scanned")
-                        .putCustomAttribute("existing", "true"));
-            }
-            scannerFragment.resumeScanning();
-        }
-    };
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -64,7 +61,6 @@ public class MainActivity extends AppCompatActivity implements Callback<SearchRe
 
         ButterKnife.bind(this, this);
         PolaApplication.component(this).inject(this);
-        handlerScanner = new Handler();
 
         Nammu.init(this);
 
@@ -81,6 +77,7 @@ public class MainActivity extends AppCompatActivity implements Callback<SearchRe
 
     @Override
     protected void onStop() {
+        analytics.flush();
         eventBus.unregister(this);
         super.onStop();
     }
@@ -96,22 +93,13 @@ public class MainActivity extends AppCompatActivity implements Callback<SearchRe
 
     @Subscribe
     public void productItemClicked(ProductItemClickedEvent event) {
-        if(BuildConfig.USE_CRASHLYTICS) {
-            try {
-                Answers.getInstance().logContentView(new ContentViewEvent()
-                                .putContentName(event.searchResult.name + "") //As it might be null
-                                .putContentType("Open Card")
-                                .putContentId(Integer.toString(event.searchResult.product_id))
-                                .putCustomAttribute("Code", event.searchResult.code)
-                                .putCustomAttribute("DeviceId", Utils.getSessionGuid(this))
-                );
-            } catch (Exception e) {
-                e.printStackTrace();
-            }
-        }
+        analytics.log(AnalyticsEvent.contentView(event.product.name + "", //As it might be null
+                "Open Card", toContentId(event.product))
+                .put("Code", event.product.code)
+                .put("DeviceId", sessionManager.getSessionGuid()));
         FragmentTransaction ft = getFragmentManager().beginTransaction();
         ft.setCustomAnimations(R.animator.slide_in, 0, 0, R.animator.slide_out);
-        ProductDetailsFragment newFragment = ProductDetailsFragment.newInstance(event.searchResult);
+        ProductDetailsFragment newFragment = ProductDetailsFragment.newInstance(event.code);
         ft.add(R.id.container, newFragment, ProductDetailsFragment.class.getName());
         ft.hide(productsListFragment);
         ft.addToBackStack(ProductDetailsFragment.class.getName());
@@ -120,8 +108,8 @@ public class MainActivity extends AppCompatActivity implements Callback<SearchRe
 
     @Subscribe
     public void reportButtonClicked(ReportButtonClickedEvent event) {
-        if(event.searchResult.product_id != null) {
-            launchReportActivity(Integer.toString(event.searchResult.product_id));
+        if(event.product.has(Product.PRODUCT_ID)) {
+            launchReportActivity(Integer.toString(event.product.productId));
         } else {
             launchReportActivity(null);
         }
@@ -141,26 +129,24 @@ public class MainActivity extends AppCompatActivity implements Callback<SearchRe
 
     @Override
     public void barcodeScanned(String result) {
-        if(BuildConfig.USE_CRASHLYTICS) {
-            Answers.getInstance().logSearch(new SearchEvent()
-                            .putQuery(result)
-                            .putCustomAttribute("DeviceId", Utils.getSessionGuid(this))
-            );
-        }
-        if(productsListFragment.itemExists(result)) {
-            handlerScanner.removeCallbacks(runnableResumeScan);
-            handlerScanner.postDelayed(runnableResumeScan, milisecondsBetweenExisting);
+        scanTimings.stage(result, ScanTimings.Stage.DISPATCH);
+        analytics.log(AnalyticsEvent.search(result)
+                .put("DeviceId", sessionManager.getSessionGuid()));
+        if(productsListFragment.itemExists(result) || barcodeLookup.isInFlight(result)) {
+            scanTimings.cancel(result);
+            analytics.log(AnalyticsEvent.custom("Scanned")
+                    .put("existing", "true"));
+            //the scanner won't report the same code again while it's still in front of the camera
+            scannerFragment.resumeScanning();
         } else {
-            if(BuildConfig.USE_CRASHLYTICS) {
-                Answers.getInstance().logCustom(new CustomEvent("Scanned")
-                        .putCustomAttribute("existing", "false"));
-            }
-            productsListFragment.createProductPlaceholder();
+            analytics.log(AnalyticsEvent.custom("Scanned")
+                    .put("existing", "false"));
+            productsListFragment.createProductPlaceholder(result);
 
-            Api api = PolaApplication.retrofit.create(Api.class);
-            Call<SearchResult> reportResultCall = api.getByCode(result, Utils.getSessionGuid(this));
-            reportResultCall.enqueue(this);
+            barcodeLookup.lookup(result, sessionManager.getSessionGuid(), new LookupCallback(result));
             if(scannerFragment != null) {
+                //results land in their own placeholders, so the next product can be scanned right away
+                scannerFragment.resumeScanning();
                 if (productsListFragment != null && productsListFragment.searchResults != null) {
                     scannerFragment.updateBoxPosition(productsListFragment.searchResults.size());
                 }
@@ -168,48 +154,63 @@ public class MainActivity extends AppCompatActivity implements Callback<SearchRe
         }
     }
 
+    @Override
+    public void barcodeCandidate(String result) {
+        barcodeLookup.prefetch(result, sessionManager.getSessionGuid());
+    }
+
+    @Override
+    public void barcodeCandidateDropped(String result) {
+        barcodeLookup.cancelPrefetch(result);
+    }
+
     @Override
     public void onRequestPermissionsResult(int requestCode, String[] permissions, int[] grantResults) {
         Nammu.onRequestPermissionsResult(requestCode, permissions, grantResults);
     }
 
-    @Override
-    public void onResponse(Response<SearchResult> response, Retrofit retrofit) {
-        if (BuildConfig.USE_CRASHLYTICS) {
-            try {
-                Answers.getInstance().logContentView(new ContentViewEvent()
-                                .putContentName(response.body().name + "")//To avoid null as it might be empty
-                                .putContentType("Card Preview")
-                                .putContentId(Integer.toString(response.body().product_id))
-                                .putCustomAttribute("Code", response.code())
-                                .putCustomAttribute("DeviceId", Utils.getSessionGuid(this))
-                );
-            } catch (Exception e) {
-                e.printStackTrace();
-            }
+    private class LookupCallback implements Callback<SearchResult> {
+        private final String code;
+
+        LookupCallback(String code) {
+            this.code = code;
         }
-        if(productsListFragment != null) {
-            productsListFragment.addProduct(response.body());
+
+        @Override
+        public void onResponse(Response<SearchResult> response, Retrofit retrofit) {
+            productFound(code, response);
         }
-        if(scannerFragment != null) {
-            scannerFragment.resumeScanning();
+
+        @Override
+        public void onFailure(Throwable t) {
+            lookupFailed(code, t);
         }
     }
 
-    @Override
-    public void onFailure(Throwable t) {
-        if(BuildConfig.USE_CRASHLYTICS) {
-            Answers.getInstance().logCustom(new CustomEvent("Barcode request failed")
-            .putCustomAttribute("message", t.getLocalizedMessage()));
+    private void productFound(String code, Response<SearchResult> response) {
+        scanTimings.stage(code, ScanTimings.Stage.NETWORK);
+        if (response.body() != null) {
+            analytics.log(AnalyticsEvent.contentView(response.body().name + "", //To avoid null as it might be empty
+                    "Card Preview", toContentId(response.body().product_id))
+                    .put("Code", response.code())
+                    .put("DeviceId", sessionManager.getSessionGuid()));
         }
+        if(productsListFragment != null) {
+            productsListFragment.addProduct(code, response.body());
+        }
+    }
+
+    private void lookupFailed(String code, Throwable t) {
+        scanTimings.cancel(code);
+        analytics.log(AnalyticsEvent.custom("Barcode request failed")
+                .put("message", t.getLocalizedMessage()));
         if("Unable to resolve host \"www.pola-app.pl\": No address associated with hostname".equals(t.getLocalizedMessage())) {//TODO this is awefull
             Toast.makeText(this, getString(R.string.toast_no_connection), Toast.LENGTH_SHORT).show();
         } else {
             Toast.makeText(this, t.getLocalizedMessage(), Toast.LENGTH_SHORT).show();
         }
-        handlerScanner.removeCallbacks(runnableResumeScan);
         if(productsListFragment != null) {
-            productsListFragment.removeProductPlaceholder();
+            productsListFragment.removeProductPlaceholder(code);
         }
         if(scannerFragment != null) {
             scannerFragment.resumeScanning();
@@ -220,4 +221,12 @@ public class MainActivity extends AppCompatActivity implements Callback<SearchRe
             }
         }
     }
+
+    private static String toContentId(Integer productId) {
+        return productId != null ? Integer.toString(productId) : null;
+    }
+
+    private static String toContentId(Product product) {
+        return product.has(Product.PRODUCT_ID) ? Integer.toString(product.productId) : null;
+    }
 }
@@ -1,7 +1,8 @@
 package pl.pola_app.ui.adapter;
 
 import android.content.Context;
-import android.content.res.Resources;
+import android.os.Looper;
+import android.os.MessageQueue;
 import android.support.v7.widget.CardView;
 import android.support.v7.widget.RecyclerView;
 import android.view.LayoutInflater;
@@ -10,35 +11,66 @@ import android.view.ViewGroup;
 import android.widget.ProgressBar;
 import android.widget.TextView;
 
-import java.util.List;
-
-import javax.inject.Inject;
-
 import butterknife.Bind;
 import butterknife.ButterKnife;
-import pl.pola_app.PolaApplication;
 import pl.pola_app.R;
-import pl.pola_app.model.SearchResult;
+import pl.pola_app.helpers.CardPalette;
+import pl.pola_app.helpers.ProductStore;
+import pl.pola_app.metrics.ScanTimings;
+import pl.pola_app.model.Product;
+import timber.log.Timber;
 
 public class ProductsAdapter extends android.support.v7.widget.RecyclerView.Adapter<ProductsAdapter.ViewHolder> {
 
     public interface ProductClickListener {
-        void itemClicked(SearchResult searchResult);
+        void itemClicked(String code, Product product);
     }
 
-    private final Context context;
-    private final List<SearchResult> searchResults;
+    //the default one, all cards share a layout
+    private static final int VIEW_TYPE_PRODUCT = 0;
+
+    private final ProductStore searchResults;
+    private final CardPalette cardPalette;
+    private final ScanTimings scanTimings;
     private ProductClickListener productClickListener;
 
-    public ProductsAdapter(Context context, List<SearchResult> searchResults) {
+    public ProductsAdapter(Context context, ProductStore searchResults, ScanTimings scanTimings) {
         this.searchResults = searchResults;
-        this.context = context;
+        this.scanTimings = scanTimings;
+        //the adapter is recreated with its fragment on configuration changes
+        this.cardPalette = CardPalette.of(context.getResources());
     }
 
     public void setOnProductClickListener(ProductClickListener productClickListener) {
         this.productClickListener = productClickListener;
     }
 
+    /**
+     * Creates up to {@code count} view holders into the list's {@link RecyclerView.RecycledViewPool}, one per idle
+     * pass of the main thread, so the first cards don't have to be inflated when their results arrive.
+     * <p/>
+     * Inflation stays on the main thread, ProgressBar remembers the thread it was created on and would post every
+     * later progress update instead of applying it if it was inflated elsewhere.
+     */
+    public void prewarm(final RecyclerView recyclerView, final int count) {
+        recyclerView.getRecycledViewPool().setMaxRecycledViews(VIEW_TYPE_PRODUCT, count);
+        Looper.myQueue().addIdleHandler(new MessageQueue.IdleHandler() {
+            private int created;
+
+            @Override
+            public boolean queueIdle() {
+                //stop if the list moved on to another adapter or already made enough holders on its own
+                if (recyclerView.getAdapter() != ProductsAdapter.this || recyclerView.getChildCount() + created >= count) {
+                    Timber.d("Prewarmed " + created + " product cards");
+                    return false;
+                }
+                recyclerView.getRecycledViewPool().putRecycledView(createViewHolder(recyclerView, VIEW_TYPE_PRODUCT));
+                created++;
+                return true;
+            }
+        });
+    }
+
     @Override
     public ViewHolder onCreateViewHolder(ViewGroup viewGroup, int i) {
         final View v = LayoutInflater.from(viewGroup.getContext())
@@ -48,8 +80,8 @@ public class ProductsAdapter extends android.support.v7.widget.RecyclerView.Adap
 
     @Override
     public void onBindViewHolder(final ViewHolder viewHolder, final int i) {
-        final SearchResult p = searchResults.get(i);
-        viewHolder.bind(p);
+        final Product p = searchResults.get(i);
+        viewHolder.bind(searchResults.codeAt(i), p);
     }
 
     @Override
@@ -71,15 +103,12 @@ public class ProductsAdapter extends android.support.v7.widget.RecyclerView.Adap
         @Bind(R.id.progressBar)
         ProgressBar progress;
 
-        @Inject
-        Resources resources;
-
         View.OnClickListener onClickListener;
+        private Product.CardType cardType;
 
         public ViewHolder(View itemView) {
             super(itemView);
             ButterKnife.bind(this, itemView);
-            PolaApplication.component(context).inject(this);
             itemView.setOnClickListener(this);
         }
 
@@ -87,45 +116,44 @@ public class ProductsAdapter extends android.support.v7.widget.RecyclerView.Adap
             this.onClickListener = onClickListener;
         }
 
-        void bind(SearchResult searchResult) {
-            if (searchResult == null) {
+        /**
+         * @param code the code the product was scanned with, the server may answer with another form of it
+         */
+        void bind(String code, Product product) {
+            if (product.placeholder) {
                 progress.setVisibility(View.VISIBLE);
                 companyName.setText("");
                 plScore.setProgress(0);
-                applyStyle(resources.getString(R.string.type_white));
+                applyStyle(Product.CardType.WHITE);
                 return;
             }
 
             progress.setVisibility(View.GONE);
 
-            applyStyle(searchResult.card_type);
-            companyName.setText(searchResult.name);
-
-            if (searchResult.plScore != null) {
-                plScore.setProgress(searchResult.plScore);
-            } else {
-                plScore.setProgress(0);
-            }
+            applyStyle(product.cardType);
+            companyName.setText(product.name);
+            //0 when unknown
+            plScore.setProgress(product.plScore);
+            scanTimings.end(code);
         }
 
-        private void applyStyle(String style) {
-            if (style.equals(resources.getString(R.string.type_grey))) {
-                productCard.setCardBackgroundColor(resources.getColor(R.color.card_type_grey_bk));
-                plScore.setBackgroundColor(resources.getColor(R.color.card_type_grey_score_bk));
-            } else {
-                productCard.setCardBackgroundColor(resources.getColor(R.color.card_type_white_bk));
-                plScore.setBackgroundColor(resources.getColor(R.color.card_type_white_score_bk));
+        private void applyStyle(Product.CardType cardType) {
+            if (this.cardType == cardType) {
+                return;
             }
+            this.cardType = cardType;
+            productCard.setCardBackgroundColor(cardPalette.cardBackground(cardType));
+            plScore.setBackgroundColor(cardPalette.scoreBackground(cardType));
         }
 
         @Override
         public void onClick(View v) {
             if(productClickListener != null) {
                 int position = getAdapterPosition();
-                if(searchResults != null && position >= 0 && searchResults.size() >= position) {
-                    SearchResult searchResult = searchResults.get(position);
-                    if(searchResult != null) {
-                        productClickListener.itemClicked(searchResult);
+                if(searchResults != null && position >= 0 && position < searchResults.size()) {
+                    Product product = searchResults.get(position);
+                    if(!product.placeholder) {
+                        productClickListener.itemClicked(searchResults.codeAt(position), product);
                     }
                 }
             }
@@ -1,15 +1,17 @@
 package pl.pola_app.ui.event;
 
-import pl.pola_app.model.SearchResult;
+import pl.pola_app.model.Product;
 
 /**
  * Created by grzegorzkapusta on 08.10.2015.
  */
 public class ProductItemClickedEvent {
-    public SearchResult searchResult;
+    public String code;
+    public Product product;
 
-    public ProductItemClickedEvent(SearchResult item) {
-        this.searchResult = item;
+    public ProductItemClickedEvent(String code, Product item) {
+        this.code = code;
+        this.product = item;
     }
 
 }
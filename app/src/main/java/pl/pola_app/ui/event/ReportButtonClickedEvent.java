@@ -1,11 +1,11 @@
 package pl.pola_app.ui.event;
 
-import pl.pola_app.model.SearchResult;
+import pl.pola_app.model.Product;
 
 public class ReportButtonClickedEvent {
-    public SearchResult searchResult;
+    public Product product;
 
-    public ReportButtonClickedEvent(SearchResult searchResult) {
-        this.searchResult = searchResult;
+    public ReportButtonClickedEvent(Product product) {
+        this.product = product;
     }
 }
@@ -17,8 +17,6 @@ import android.widget.TextView;
 
 import com.squareup.otto.Bus;
 
-import org.parceler.Parcels;
-
 import javax.inject.Inject;
 
 import butterknife.Bind;
@@ -26,7 +24,9 @@ import butterknife.ButterKnife;
 import butterknife.OnClick;
 import pl.pola_app.PolaApplication;
 import pl.pola_app.R;
-import pl.pola_app.model.SearchResult;
+import pl.pola_app.helpers.CardPalette;
+import pl.pola_app.model.Product;
+import pl.pola_app.storage.ProductRepository;
 import pl.pola_app.ui.event.ProductDetailsFragmentDismissedEvent;
 import pl.pola_app.ui.event.ReportButtonClickedEvent;
 
@@ -83,12 +83,18 @@ public class ProductDetailsFragment extends DialogFragment {
     @Inject
     Resources resources;
 
-    private SearchResult searchResult;
+    @Inject
+    ProductRepository productRepository;
+
+    private static final String ARG_CODE = "code";
 
-    public static ProductDetailsFragment newInstance(SearchResult searchResult) {
+    private String code;
+    private Product product;
+
+    public static ProductDetailsFragment newInstance(String code) {
         ProductDetailsFragment fragment = new ProductDetailsFragment();
         Bundle args = new Bundle();
-        args.putParcelable(SearchResult.class.getName(), Parcels.wrap(searchResult));
+        args.putString(ARG_CODE, code);
         fragment.setArguments(args);
         return fragment;
     }
@@ -101,7 +107,7 @@ public class ProductDetailsFragment extends DialogFragment {
     public void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         if (getArguments() != null) {
-            searchResult = Parcels.unwrap(getArguments().getParcelable(SearchResult.class.getName()));
+            code = getArguments().getString(ARG_CODE);
         }
     }
 
@@ -119,95 +125,106 @@ public class ProductDetailsFragment extends DialogFragment {
     public void onActivityCreated(Bundle savedInstanceState) {
         super.onActivityCreated(savedInstanceState);
 
-        applyStyle(searchResult.card_type, searchResult.report_button_type);
-        reportMessage.setText(searchResult.report_text);
-        reportButton.setText(searchResult.report_button_text);
+        productInfoCard.setOnClickListener(new View.OnClickListener() {
+
+            @Override
+            public void onClick(View v) {
+                eventBus.post(new ProductDetailsFragmentDismissedEvent());
+            }
+        });
+
+        //straight from memory when opened from the list, from disk when restored after the process was killed
+        productRepository.load(code, new ProductRepository.Callback() {
+            @Override
+            public void onProductLoaded(Product product) {
+                if (productInfoCard == null) {
+                    return;
+                }
+                if (product == null) {
+                    eventBus.post(new ProductDetailsFragmentDismissedEvent());
+                    return;
+                }
+                bind(product);
+            }
+        });
+    }
+
+    @Override
+    public void onDestroyView() {
+        super.onDestroyView();
+        ButterKnife.unbind(this);
+    }
+
+    private void bind(Product product) {
+        this.product = product;
+        applyStyle(product.cardType, product.reportButtonType);
+        reportMessage.setText(product.reportText);
+        reportButton.setText(product.reportButtonText);
 
-        tv_companyName.setText(searchResult.name);
+        tv_companyName.setText(product.name);
 
-        if(searchResult.plScore != null) {
-            plScoreBar.setProgress(searchResult.plScore);
-            plScoreText.setText(searchResult.plScore + " pkt");
+        if(product.has(Product.PL_SCORE)) {
+            plScoreBar.setProgress(product.plScore);
+            plScoreText.setText(product.plScore + " pkt");
         } else {
             plScoreBar.setProgress(0);
             plScoreText.setText("?");
         }
 
-        if(searchResult.plCapital != null) {
-            plCapitalBar.setProgress(searchResult.plCapital);
-            plCapitalText.setText(searchResult.plCapital + "%");
+        if(product.has(Product.PL_CAPITAL)) {
+            plCapitalBar.setProgress(product.plCapital);
+            plCapitalText.setText(product.plCapital + "%");
         } else {
             plCapitalBar.setProgress(0);
             plCapitalText.setText("?");
         }
 
-        if(searchResult.altText != null) {
+        if(product.altText != null) {
             plDataLayout.setVisibility(View.GONE);
             altText.setVisibility(View.VISIBLE);
-            altText.setText(searchResult.altText);
+            altText.setText(product.altText);
         } else {
             altText.setVisibility(View.GONE);
             plDataLayout.setVisibility(View.VISIBLE);
 
-            if (searchResult.plWorkers != null && searchResult.plWorkers != 0) {
-                buttonWorkers.setSelected(true);
-            } else if (searchResult.plWorkers == null) {
-                buttonWorkers.setEnabled(false);
-            }
-
-            if (searchResult.plRnD != null && searchResult.plRnD != 0) {
-                buttonRnd.setSelected(true);
-            } else if (searchResult.plRnD == null) {
-                buttonRnd.setEnabled(false);
-            }
-
-            if (searchResult.plRegistered != null && searchResult.plRegistered != 0) {
-                buttonRegistered.setSelected(true);
-            } else if (searchResult.plRegistered == null) {
-                buttonRegistered.setEnabled(false);
-            }
+            bindFlag(buttonWorkers, product, Product.PL_WORKERS, product.plWorkers);
+            bindFlag(buttonRnd, product, Product.PL_RND, product.plRnD);
+            bindFlag(buttonRegistered, product, Product.PL_REGISTERED, product.plRegistered);
+            bindFlag(buttonGlobent, product, Product.PL_NOT_GLOB_ENT, product.plNotGlobEnt);
 
-            if (searchResult.plNotGlobEnt != null && searchResult.plNotGlobEnt != 0) {
-                buttonGlobent.setSelected(true);
-            } else if (searchResult.plNotGlobEnt == null) {
-                buttonGlobent.setEnabled(false);
-            }
-
-            if(searchResult.description != null) {
+            if(product.description != null) {
                 description.setVisibility(View.VISIBLE);
-                description.setText(searchResult.description);
+                description.setText(product.description);
             } else {
                 description.setVisibility(View.GONE);
             }
         }
-
-        productInfoCard.setOnClickListener(new View.OnClickListener() {
-
-            @Override
-            public void onClick(View v) {
-                eventBus.post(new ProductDetailsFragmentDismissedEvent());
-            }
-        });
     }
 
-    private void applyStyle(String cardType, String reportType) {
-        if (cardType.equals(resources.getString(R.string.type_grey))) {
-            productInfoCard.setCardBackgroundColor(resources.getColor(R.color.card_type_grey_bk));
-        } else {
-            productInfoCard.setCardBackgroundColor(resources.getColor(R.color.card_type_white_bk));
+    private static void bindFlag(ImageButton button, Product product, int field, int value) {
+        if (!product.has(field)) {
+            button.setEnabled(false);
+        } else if (value != 0) {
+            button.setSelected(true);
         }
+    }
 
-        if(reportType.equals(resources.getString(R.string.type_red))) {
-            reportButton.setBackgroundColor(resources.getColor(R.color.card_type_red_report_bt_bk));
-            reportButton.setTextColor(resources.getColor(R.color.card_type_red_report_bt_text));
+    private void applyStyle(Product.CardType cardType, Product.ReportButtonType reportButtonType) {
+        CardPalette cardPalette = CardPalette.of(resources);
+        productInfoCard.setCardBackgroundColor(cardPalette.cardBackground(cardType));
+
+        if(reportButtonType == Product.ReportButtonType.RED) {
+            reportButton.setBackgroundColor(cardPalette.redReportButtonBackground());
         } else {
             reportButton.setBackground(ContextCompat.getDrawable(getActivity(), R.drawable.button_border));
-            reportButton.setTextColor(resources.getColor(R.color.card_type_white_report_bt_text));
         }
+        reportButton.setTextColor(cardPalette.reportButtonText(reportButtonType));
     }
 
     @OnClick(R.id.report_button)
     public void report() {
-        eventBus.post(new ReportButtonClickedEvent(searchResult));
+        if (product != null) {
+            eventBus.post(new ReportButtonClickedEvent(product));
+        }
     }
 }
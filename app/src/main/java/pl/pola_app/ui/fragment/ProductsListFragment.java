@@ -8,28 +8,33 @@ import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
 
-import com.crashlytics.android.answers.Answers;
-import com.crashlytics.android.answers.CustomEvent;
 import com.squareup.otto.Bus;
 
-import org.parceler.Parcels;
-
-import java.util.ArrayList;
-import java.util.List;
-
 import javax.inject.Inject;
 
 import butterknife.Bind;
 import butterknife.ButterKnife;
-import pl.pola_app.BuildConfig;
 import pl.pola_app.PolaApplication;
 import pl.pola_app.R;
+import pl.pola_app.analytics.Analytics;
+import pl.pola_app.analytics.AnalyticsEvent;
+import pl.pola_app.helpers.ProductStore;
 import pl.pola_app.helpers.ProductsListLinearLayoutManager;
+import pl.pola_app.metrics.ScanTimings;
+import pl.pola_app.model.Product;
 import pl.pola_app.model.SearchResult;
+import pl.pola_app.storage.ProductRepository;
+import pl.pola_app.storage.ScanHistory;
 import pl.pola_app.ui.adapter.ProductsAdapter;
 import pl.pola_app.ui.event.ProductItemClickedEvent;
 
 public class ProductsListFragment extends Fragment implements ProductsAdapter.ProductClickListener {
+    private static final String STATE_POSITION = "position";
+    private static final int PAGE_SIZE = 20;
+    //how close to the bottom the list gets before the next page is loaded
+    private static final int PAGE_PREFETCH_DISTANCE = 5;
+    //cards that fit in the list at its height limit
+    private static final int PREWARMED_CARDS = 5;
 
     @Bind(R.id.products_list)
     RecyclerView productsList;
@@ -40,8 +45,24 @@ public class ProductsListFragment extends Fragment implements ProductsAdapter.Pr
     @Inject
     Bus eventBus;
 
+    @Inject
+    Analytics analytics;
+
+    @Inject
+    ScanHistory scanHistory;
+
+    @Inject
+    ProductRepository productRepository;
+
+    @Inject
+    ScanTimings scanTimings;
+
     private ProductsAdapter productsAdapter;
-    public List<SearchResult> searchResults;
+    public ProductStore searchResults;
+    private long oldestScannedAt = Long.MAX_VALUE;
+    private long oldestRowId = Long.MAX_VALUE;
+    private boolean historyLoading;
+    private boolean historyComplete;
 
     public ProductsListFragment() {
         // Required empty public constructor
@@ -54,7 +75,7 @@ public class ProductsListFragment extends Fragment implements ProductsAdapter.Pr
         PolaApplication.component(getActivity()).inject(this);
         ButterKnife.bind(this, productsListView);
 
-        searchResults = new ArrayList<>();
+        searchResults = new ProductStore();
         return productsListView;
     }
 
@@ -62,15 +83,25 @@ public class ProductsListFragment extends Fragment implements ProductsAdapter.Pr
     public void onActivityCreated(Bundle savedInstanceState) {
         super.onActivityCreated(savedInstanceState);
 
-        if(savedInstanceState != null) {
-            searchResults = Parcels.unwrap(savedInstanceState.getParcelable(SearchResult.class.getName()));
-        }
-
-        productsAdapter = new ProductsAdapter(getActivity(), searchResults);
+        productsAdapter = new ProductsAdapter(getActivity(), searchResults, scanTimings);
         productsAdapter.setOnProductClickListener(this);
 
         productsList.setLayoutManager(productsListLinearLayoutManager);
         productsList.setAdapter(productsAdapter);
+        productsAdapter.prewarm(productsList, PREWARMED_CARDS);
+        productsList.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(RecyclerView recyclerView, int dx, int dy) {
+                int lastVisible = productsListLinearLayoutManager.findLastVisibleItemPosition();
+                if (lastVisible >= searchResults.size() - PAGE_PREFETCH_DISTANCE) {
+                    loadHistory(PAGE_SIZE, RecyclerView.NO_POSITION);
+                }
+            }
+        });
+
+        int position = savedInstanceState != null ? savedInstanceState.getInt(STATE_POSITION) : 0;
+        //load enough to get back to where the list was scrolled to before it was recreated
+        loadHistory(position + PAGE_SIZE, position > 0 ? position : RecyclerView.NO_POSITION);
     }
 
     @Override
@@ -82,55 +113,101 @@ public class ProductsListFragment extends Fragment implements ProductsAdapter.Pr
     @Override
     public void onSaveInstanceState(Bundle outState) {
         super.onSaveInstanceState(outState);
-        outState.putParcelable(SearchResult.class.getName(), Parcels.wrap(searchResults));
+        if (productsList != null) {
+            outState.putInt(STATE_POSITION, productsListLinearLayoutManager.findFirstVisibleItemPosition());
+        }
     }
 
-    public void addProduct(SearchResult searchResult) {
-        if (searchResults.size() > 0 && searchResults.get(0) == null) {
-            if(BuildConfig.USE_CRASHLYTICS) {
-                Answers.getInstance().logCustom(new CustomEvent("addProduct")
-                        .putCustomAttribute("good", "true"));
+    private void loadHistory(int limit, final int scrollTo) {
+        if (historyLoading || historyComplete) {
+            return;
+        }
+        historyLoading = true;
+        scanHistory.loadPage(oldestScannedAt, oldestRowId, limit, new ScanHistory.PageCallback() {
+            @Override
+            public void onPageLoaded(ScanHistory.Page page) {
+                historyLoading = false;
+                historyComplete = page.last;
+                oldestScannedAt = page.oldestScannedAt;
+                oldestRowId = page.oldestRowId;
+
+                int start = searchResults.size();
+                for (int i = 0; i < page.products.size(); i++) {
+                    //products scanned again since the page was read are already on top
+                    searchResults.addLast(page.codes.get(i), page.products.get(i));
+                }
+                int added = searchResults.size() - start;
+                if (added > 0) {
+                    productsAdapter.notifyItemRangeInserted(start, added);
+                }
+                if (scrollTo != RecyclerView.NO_POSITION && productsList != null) {
+                    productsList.scrollToPosition(Math.min(scrollTo, searchResults.size() - 1));
+                }
             }
-            searchResults.set(0, searchResult);
+        });
+    }
+
+    public void addProduct(String code, SearchResult searchResult) {
+        if (searchResult == null) {
+            removeProductPlaceholder(code);
+            return;
+        }
+        Product product = Product.from(code, searchResult);
+        productRepository.put(code, product);
+        Product current = searchResults.get(code);
+        if (current != null && current.placeholder) {
+            analytics.log(AnalyticsEvent.custom("addProduct")
+                    .put("good", "true"));
+            productsAdapter.notifyItemChanged(searchResults.set(code, product));
+            scanHistory.record(code);
         } else {
-            if(BuildConfig.USE_CRASHLYTICS) {
-                Answers.getInstance().logCustom(new CustomEvent("addProduct")
-                    .putCustomAttribute("good", "false"));
+            analytics.log(AnalyticsEvent.custom("addProduct")
+                    .put("good", "false"));
+            int removedPosition = searchResults.remove(code);
+            if (removedPosition >= 0) {
+                productsAdapter.notifyItemRemoved(removedPosition);
             }
-            searchResults.add(0, searchResult);
+            searchResults.addFirst(code, product);
+            productsAdapter.notifyItemInserted(0);
+            scanHistory.record(code);
+            showTop();
         }
-        productsAdapter.notifyDataSetChanged();
     }
 
-    public void createProductPlaceholder() {
-        searchResults.add(0, null);
-        productsAdapter.notifyDataSetChanged();
+    public void createProductPlaceholder(String code) {
+        searchResults.addFirst(code, Product.placeholder(code));
+        productsAdapter.notifyItemInserted(0);
+        showTop();
     }
 
-    public void removeProductPlaceholder() {
-        if(searchResults.size() > 0 && searchResults.get(0) == null) {
-            searchResults.remove(0);
-            productsAdapter.notifyDataSetChanged();
+    public void removeProductPlaceholder(String code) {
+        Product current = searchResults.get(code);
+        if (current != null && current.placeholder) {
+            productsAdapter.notifyItemRemoved(searchResults.remove(code));
+        }
+    }
+
+    //otherwise the list stays anchored at the old first card and the new one lands above the visible area
+    private void showTop() {
+        if (productsList != null) {
+            productsList.scrollToPosition(0);
         }
     }
 
     @Override
-    public void itemClicked(SearchResult searchResult) {
-        eventBus.post(new ProductItemClickedEvent(searchResult));
+    public void itemClicked(String code, Product product) {
+        eventBus.post(new ProductItemClickedEvent(code, product));
     }
 
     public boolean itemExists(String code) {
-        for(SearchResult p : searchResults) {
-            if(p != null) {
-                if (p.code.equals(code)) {
-                    searchResults.remove(p);
-                    searchResults.add(0, p);
-                    productsAdapter.notifyDataSetChanged();
-                    return true;
-                }
-            }
+        int position = searchResults.moveToFront(code);
+        if (position > 0) {
+            productsAdapter.notifyItemMoved(position, 0);
+            showTop();
         }
-
-        return false;
+        if (position >= 0 && !searchResults.get(code).placeholder) {
+            scanHistory.record(code);
+        }
+        return position >= 0;
     }
 }
@@ -1,11 +1,15 @@
 package pl.pola_app.ui.fragment;
 
+import android.app.AlertDialog;
+import android.Manifest;
 import android.app.Fragment;
 import android.content.ActivityNotFoundException;
 import android.content.Context;
 import android.content.Intent;
+import android.content.pm.PackageManager;
 import android.net.Uri;
 import android.os.Bundle;
+import android.os.Handler;
 import android.os.Vibrator;
 import android.support.v4.content.ContextCompat;
 import android.support.v7.app.AppCompatActivity;
@@ -23,41 +27,51 @@ import android.widget.RelativeLayout;
 import android.widget.TextView;
 import android.widget.Toast;
 
-import com.google.android.gms.vision.CameraSource;
-import com.google.zxing.ResultPoint;
-import com.journeyapps.barcodescanner.BarcodeCallback;
-import com.journeyapps.barcodescanner.BarcodeResult;
 import com.journeyapps.barcodescanner.CompoundBarcodeView;
 import com.journeyapps.barcodescanner.Size;
 import com.journeyapps.barcodescanner.camera.CameraSettings;
 import com.squareup.otto.Bus;
 import com.squareup.otto.Subscribe;
 
-import java.util.List;
-import java.util.concurrent.TimeUnit;
-
 import javax.inject.Inject;
 
 import butterknife.Bind;
 import butterknife.ButterKnife;
 import butterknife.OnClick;
+import pl.pola_app.BuildConfig;
 import pl.pola_app.PolaApplication;
 import pl.pola_app.R;
+import pl.pola_app.helpers.Ean;
 import pl.pola_app.helpers.Utils;
+import pl.pola_app.metrics.ScanTimings;
+import pl.pola_app.network.ConnectionWarmer;
 import pl.pola_app.ui.activity.ActivityWebView;
 import pl.pola_app.ui.activity.CreateReportActivity;
 import pl.pola_app.ui.event.ProductItemClickedEvent;
+import pl.pola_app.ui.scanner.BarcodeDecoderEngine;
 import pl.pola_app.ui.scanner.CameraSourcePreview;
+import pl.pola_app.ui.scanner.DecoderEngineSelector;
+import pl.pola_app.ui.scanner.FrameRoi;
+import pl.pola_app.ui.scanner.ScanGovernor;
 import pl.pola_app.ui.scanner.ScannerBox;
+import pl.pola_app.ui.scanner.VisionDecoderEngine;
+import pl.pola_app.ui.scanner.ZxingDecoderEngine;
 import pl.tajchert.nammu.Nammu;
 import pl.tajchert.nammu.PermissionCallback;
 import timber.log.Timber;
 
-public class ScannerFragment extends Fragment implements CompoundBarcodeView.TorchListener {
+public class ScannerFragment extends Fragment implements BarcodeDecoderEngine.Listener {
     private static final String TAG = ScannerFragment.class.getSimpleName();
 
     public interface BarcodeScannedListener {
         void barcodeScanned(String result);
+
+        /**
+         * Called as soon as a valid EAN is decoded once, before it's confirmed by the next frame.
+         */
+        void barcodeCandidate(String result);
+
+        void barcodeCandidateDropped(String result);
     }
 
     private BarcodeScannedListener barcodeScannedListener;
@@ -65,6 +79,15 @@ public class ScannerFragment extends Fragment implements CompoundBarcodeView.Tor
     @Inject
     Bus eventBus;
 
+    @Inject
+    ConnectionWarmer connectionWarmer;
+
+    @Inject
+    ScanTimings scanTimings;
+
+    @Inject
+    DecoderEngineSelector engineSelector;
+
     @Bind(R.id.preview)
     CameraSourcePreview mPreview;//Google Mobile Vision Barcode API
     @Bind(R.id.scannerBox)
@@ -74,22 +97,30 @@ public class ScannerFragment extends Fragment implements CompoundBarcodeView.Tor
     @Bind(R.id.toolbar)
     Toolbar toolbar;
     @Bind(R.id.scanner_view)
-    CompoundBarcodeView barcodeScanner;//ZXING this or mPreview should be used
+    CompoundBarcodeView barcodeScanner;//ZXING this or mPreview is used, depending on the engine
 
     @Bind(R.id.flash_icon)
     ImageView flashIconView;
 
-    private final boolean isGoogleBarcodeOperational = false;
-    private long timestampLastScanned = 0;
-    private long timeBetweenScans = TimeUnit.SECONDS.toMillis(1);//To slow down Google Mobile Vision as otherwise it generates few scans per each barcode.
+    //engines keep decoding a barcode as long as it's in front of the camera, otherwise it's scanned few times a second
+    private final ScanGovernor scanGovernor = new ScanGovernor();
 
-
-    private CameraSource mCameraSource;
+    private BarcodeDecoderEngine engine;
     private boolean isDecoding = true;
-    private static final int RC_HANDLE_GMS = 9001;
+    private long decodingStartedAt;
 
     private boolean isTorchOn = false;
 
+    private static final long CANDIDATE_TIMEOUT_MILLIS = 500;
+    private final Handler candidateHandler = new Handler();
+    private String candidate;
+    private final Runnable dropCandidate = new Runnable() {
+        @Override
+        public void run() {
+            setCandidate(null);
+        }
+    };
+
     public ScannerFragment() {
         // Required empty public constructor
     }
@@ -110,7 +141,7 @@ public class ScannerFragment extends Fragment implements CompoundBarcodeView.Tor
         getActivity().getWindowManager().getDefaultDisplay().getMetrics(metrics);
         int width = metrics.widthPixels;
         int height = metrics.heightPixels;
-        barcodeScanner.getBarcodeView().setFramingRectSize(new Size((int) (width*0.9f), (int) (height*0.25f)));
+        barcodeScanner.getBarcodeView().setFramingRectSize(new Size((int) (width * FrameRoi.WIDTH), (int) (height * FrameRoi.HEIGHT)));
         RelativeLayout.LayoutParams layoutParams = new RelativeLayout.LayoutParams(
                 RelativeLayout.LayoutParams.MATCH_PARENT, RelativeLayout.LayoutParams.WRAP_CONTENT);
 
@@ -120,10 +151,13 @@ public class ScannerFragment extends Fragment implements CompoundBarcodeView.Tor
         CameraSettings cameraSettings = barcodeScanner.getBarcodeView().getCameraSettings();
         cameraSettings.setBarcodeSceneModeEnabled(true);
         barcodeScanner.getBarcodeView().setCameraSettings(cameraSettings);
-
         barcodeScanner.setStatusText(getActivity().getString(R.string.scanner_status_text));
-        barcodeScanner.setTorchListener(this);
-        barcodeScanner.setTorchOff();
+
+        engine = createEngine();
+        engine.setListener(this);
+        setTorch(false);
+        flashIconView.setVisibility(engine.hasTorch() ? View.VISIBLE : View.GONE);
+        Timber.d("Decoding with " + engine.getName());
 
         Nammu.askForPermission(getActivity(), android.Manifest.permission.CAMERA, permissionCameraCallback);
         ((AppCompatActivity) getActivity()).setSupportActionBar(toolbar);
@@ -140,144 +174,68 @@ public class ScannerFragment extends Fragment implements CompoundBarcodeView.Tor
     public void onResume() {
         super.onResume();
         eventBus.register(this);
-        //startCameraSource();//FIXME using Google mobile vision
-        if(barcodeScanner != null) {
-            barcodeScanner.resume();
+        //without the permission the camera is opened once it's granted, which resumes the fragment again
+        if (engine != null && ContextCompat.checkSelfPermission(getActivity(), Manifest.permission.CAMERA)
+                == PackageManager.PERMISSION_GRANTED) {
+            engine.resume();
+        }
+        if (engine != null) {
+            engineSelector.startTiming(engine.getName());
         }
-        timestampLastScanned = 0;
+        connectionWarmer.warmUp();
+        scanGovernor.reset();
     }
 
-
-
     @Override
     public void onPause() {
         super.onPause();
+        setCandidate(null);
         eventBus.unregister(this);
-        if(barcodeScanner != null) {
-            barcodeScanner.setTorchOff();
-            barcodeScanner.pause();
-        }
-        if (mPreview != null) {
-            mPreview.stop();
+        engineSelector.stopTiming();
+        if (engine != null) {
+            setTorch(false);
+            engine.pause();
         }
     }
 
     @Override
-    public void onDestroy() {
-        super.onDestroy();
-        if (mPreview != null) {
-            mPreview.release();
+    public void onDestroyView() {
+        super.onDestroyView();
+        //the engine is made for the views of onCreateView, a recreated view gets a new one
+        if (engine != null) {
+            engine.release();
+            engine = null;
         }
         ButterKnife.unbind(this);
     }
 
-    //Good explanation https://github.com/googlesamples/android-vision/blob/master/visionSamples/barcode-reader/app/src/main/java/com/google/android/gms/samples/vision/barcodereader/BarcodeCaptureActivity.java
-    /*//FIXME using Google mobile vision
-    private void createCameraSource() {
-        Context context = getActivity().getApplicationContext();
-        BarcodeDetector barcodeDetector = new BarcodeDetector.Builder(context).build();
-        barcodeDetector.setProcessor(frameProcessor);
-        if(!barcodeDetector.isOperational()) {
-            //Detector dependencies are not yet available.
-            IntentFilter lowStorageFilter = new IntentFilter(Intent.ACTION_DEVICE_STORAGE_LOW);
-            boolean hasLowStorage = getActivity().registerReceiver(null, lowStorageFilter) != null;
-            if (hasLowStorage) {
-                isGoogleBarcodeOperational = false;//not enough space to download dependencies
-            } else {
-                isGoogleBarcodeOperational = true;//It will be just wait for download
+    private BarcodeDecoderEngine createEngine() {
+        if (BarcodeDecoderEngine.VISION.equals(engineSelector.select())) {
+            VisionDecoderEngine visionEngine = new VisionDecoderEngine(getActivity(), mPreview, scanTimings, scanGovernor);
+            if (visionEngine.isOperational()) {
+                barcodeScanner.setVisibility(View.GONE);
+                return visionEngine;
             }
-        } else {
-            isGoogleBarcodeOperational = true;
-        }
-        int width;
-        int height;
-        try {
-            DisplayMetrics metrics = new DisplayMetrics();
-            getActivity().getWindowManager().getDefaultDisplay().getMetrics(metrics);
-            width = metrics.widthPixels;
-            height = metrics.heightPixels;
-        } catch (Exception e) {
-            //Something went wrong, use default values  (HD)
-            width = 720;
-            height = 1280;
-        }
-        if (width <= 0) {
-            width = 720;
-        }
-        if (height <= 0) {
-            height = 1280;
-        }
-        CameraSource.Builder builder = new CameraSource.Builder(getActivity().getApplicationContext(), barcodeDetector)
-                .setFacing(CameraSource.CAMERA_FACING_BACK)
-                .setRequestedPreviewSize(width, height)
-                .setRequestedFps(15.0f);
-        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.ICE_CREAM_SANDWICH) {
-            builder = builder.setAutoFocusEnabled(true);
-        }
-        mCameraSource = builder.build();
-    }*/
-
-    /*//FIXME using Google mobile vision
-    private void startCameraSource() throws SecurityException {
-        int code = GoogleApiAvailability.getInstance().isGooglePlayServicesAvailable(getActivity().getApplicationContext());
-        if (code != ConnectionResult.SUCCESS) {
-            Dialog dlg = GoogleApiAvailability.getInstance().getErrorDialog(getActivity(), code, RC_HANDLE_GMS);
-            dlg.show();
-        }
-
-        if (mCameraSource != null) {
-            try {
-                mPreview.start(mCameraSource);
-                if(isGoogleBarcodeOperational) {
-                    shutDownZxing();
-                } else {
-                    shutDownGoogleBarcode();
-                }
-            } catch (IOException e) {
-                Log.e(TAG, "Unable to start camera source.", e);
-                shutDownGoogleBarcode();
-            }
-        }
-    }*/
-
-    private void shutDownZxing() {
-        if(barcodeScanner != null) {
-            barcodeScanner.pause();
-            barcodeScanner.setVisibility(View.GONE);
-            barcodeScanner = null;
+            //Play Services are missing or still downloading the detector
+            Timber.d("Mobile Vision isn't operational");
+            engineSelector.visionUnavailable();
+            visionEngine.release();
         }
+        mPreview.setVisibility(View.GONE);
+        return new ZxingDecoderEngine(barcodeScanner, scanTimings, scanGovernor);
     }
 
-    /*//FIXME using Google mobile vision
-    private void shutDownGoogleBarcode() {
-        if(mCameraSource != null) {
-            mCameraSource.release();
-            mCameraSource = null;
-        }
-        if(barcodeScanner != null) {
-            barcodeScanner.setVisibility(View.VISIBLE);
-            barcodeScanner.resume();
-        }
-        if(mPreview != null && scannerBox != null) {
-            mPreview.setVisibility(View.GONE);
-            scannerBox.setVisibility(View.GONE);
-        }
-        if(BuildConfig.USE_CRASHLYTICS) {
-            Answers.getInstance().logCustom(new CustomEvent("ShutdownGScanner")
-                    .putCustomAttribute("deviceId", Utils.getDeviceId(getActivity().getApplicationContext())));
-        }
-    }*/
-
     public void resumeScanning() {
-        if(barcodeScanner != null) {
-            barcodeScanner.decodeContinuous(callback);
+        decodingStartedAt = System.nanoTime();
+        if(engine != null) {
+            engine.startDecoding();
         }
         isDecoding = true;
     }
 
     public void updateBoxPosition(int numberOfCards) {
-        //FIXME using Google mobile vision
-        /*if(scannerBox.getVisibility() == View.VISIBLE) {
+        //the box is drawn over the Mobile Vision preview only
+        if(mPreview != null && mPreview.getVisibility() == View.VISIBLE) {
             if (numberOfCards == 0) {
                 if (textHintScan != null) {
                     textHintScan.setVisibility(View.VISIBLE);
@@ -294,14 +252,13 @@ public class ScannerFragment extends Fragment implements CompoundBarcodeView.Tor
                 }
                 scannerBox.setMovedPosition(getActivity(), numberOfCards);
             }
-        }*/
+        }
     }
 
     final PermissionCallback permissionCameraCallback = new PermissionCallback() {
         @Override
         public void permissionGranted() {
             resumeScanning();
-            //createCameraSource();//FIXME using Google mobile vision
         }
 
         @Override
@@ -313,6 +270,7 @@ public class ScannerFragment extends Fragment implements CompoundBarcodeView.Tor
     @Override
     public void onCreateOptionsMenu(Menu menu, MenuInflater inflater) {
         inflater.inflate(R.menu.menu_main, menu);
+        menu.findItem(R.id.action_timings).setVisible(BuildConfig.DEBUG);
     }
 
     @Override
@@ -376,115 +334,86 @@ public class ScannerFragment extends Fragment implements CompoundBarcodeView.Tor
                 intent = new Intent(Intent.ACTION_VIEW, Uri.parse(Utils.URL_POLA_TWITTER));
                 startActivity(intent);
                 return true;
+            case R.id.action_timings:
+                new AlertDialog.Builder(getActivity())
+                        .setTitle(R.string.action_timings)
+                        .setMessage(scanTimings.report() + "\n" + scanGovernor.report())
+                        .setPositiveButton(android.R.string.ok, null)
+                        .show();
+                return true;
             default:
                 return super.onOptionsItemSelected(item);
         }
     }
 
-    //Handlling Google Mobile Vision Detections if there are any
-    //FIXME using Google mobile vision
-    /*Detector.Processor frameProcessor = new Detector.Processor<Barcode>() {
-        @Override
-        public void release() {
-            Log.d(TAG, "release: ");
+    private void setCandidate(String code) {
+        candidateHandler.removeCallbacks(dropCandidate);
+        if (candidate != null && !candidate.equals(code) && barcodeScannedListener != null) {
+            barcodeScannedListener.barcodeCandidateDropped(candidate);
         }
-
-        @Override
-        public void receiveDetections(Detector.Detections<Barcode> detections) {
-            if (detections != null
-                    && detections.getDetectedItems() != null
-                    && detections.getDetectedItems().size() > 0
-                    && System.currentTimeMillis() - timestampLastScanned > timeBetweenScans
-                    && isDecoding) {
-                timestampLastScanned = System.currentTimeMillis();
-                for (int i = 0; i < detections.getDetectedItems().size(); i++) {
-                    int key = detections.getDetectedItems().keyAt(i);
-                    Barcode barcode = detections.getDetectedItems().get(key);
-                    if (barcode != null) {
-                        scannedBarcode(barcode);
-                    }
-                }
-                isDecoding = false;
+        candidate = code;
+        if (code != null) {
+            if (barcodeScannedListener != null) {
+                barcodeScannedListener.barcodeCandidate(code);
             }
+            candidateHandler.postDelayed(dropCandidate, CANDIDATE_TIMEOUT_MILLIS);
         }
-    };
+    }
 
-    //Google Mobile Vision barcode result
-    private void scannedBarcode(Barcode barcode) {
-        final String result = barcode.displayValue;
-        if (result != null) {
-            ((Vibrator) getActivity().getSystemService(Context.VIBRATOR_SERVICE)).vibrate(100);
-            getActivity().runOnUiThread(new Runnable() {
-                @Override
-                public void run() {
-                    if (barcodeScannedListener != null) {
-                        barcodeScannedListener.barcodeScanned(result);
-                    }
-                }
-            });
-            Timber.d(result);
+    @Override
+    public void onBarcodeDecoded(String code, String format) {
+        if (!isDecoding || scanGovernor.isHeld(code)) {
+            return;
         }
-    }*/
-
-    //ZXING barcode result
-    private BarcodeCallback callback = new BarcodeCallback() {
-        @Override
-        public void barcodeResult(final BarcodeResult result) {
-            if (result.getText() != null) {
-                if(barcodeScanner != null) {
-                    barcodeScanner.getBarcodeView().stopDecoding();
-                    barcodeScanner.setStatusText("");
-                }
-                ((Vibrator) getActivity().getSystemService(Context.VIBRATOR_SERVICE)).vibrate(100);
-                getActivity().runOnUiThread(new Runnable() {
-                    @Override
-                    public void run() {
-                        if (barcodeScannedListener != null) {
-                            barcodeScannedListener.barcodeScanned(result.getText());
-                        }
-                    }
-                });
-
-                Timber.d(result.getText());
-                Timber.d(result.getBarcodeFormat().toString());
-
-            }
+        //A valid EAN has to be read from two frames in a row, the lookup starts after the first one
+        //so the network works while we wait for the confirmation, vibrate and update the UI
+        if (Ean.isValid(code) && !code.equals(candidate)) {
+            setCandidate(code);
+            return;
         }
-
-        @Override
-        public void possibleResultPoints(List<ResultPoint> resultPoints) {
+        if (code.equals(candidate)) {
+            candidateHandler.removeCallbacks(dropCandidate);
+            candidate = null;
+        } else {
+            setCandidate(null);
         }
-    };
+        scanTimings.record(ScanTimings.Stage.DECODE, decodingStartedAt);
+        scanTimings.begin(code);
+
+        isDecoding = false;
+        scanGovernor.accepted(code);
+        engine.stopDecoding();
+        ((Vibrator) getActivity().getSystemService(Context.VIBRATOR_SERVICE)).vibrate(100);
+        scanTimings.stage(code, ScanTimings.Stage.VIBRATE);
+        if (barcodeScannedListener != null) {
+            barcodeScannedListener.barcodeScanned(code);
+        }
+
+        Timber.d(code);
+        Timber.d(format);
+    }
 
     @OnClick(R.id.flash_icon)
     public void onFlashIconClicked() {
-        if(isTorchOn) {
-            barcodeScanner.setTorchOff();
-        } else {
-            barcodeScanner.setTorchOn();
-        }
+        setTorch(!isTorchOn);
     }
 
-    @Override
-    public void onTorchOn() {
-        isTorchOn = true;
-        if(flashIconView != null) {
-            flashIconView.setImageDrawable(ContextCompat.getDrawable(getActivity(), R.drawable.ic_flash_off_white_48dp));
+    private void setTorch(boolean on) {
+        if (engine == null || !engine.hasTorch()) {
+            return;
         }
-    }
-
-    @Override
-    public void onTorchOff() {
-        isTorchOn = false;
+        engine.setTorch(on);
+        isTorchOn = on;
         if(flashIconView != null) {
-            flashIconView.setImageDrawable(ContextCompat.getDrawable(getActivity(), R.drawable.ic_flash_on_white_48dp));
+            flashIconView.setImageDrawable(ContextCompat.getDrawable(getActivity(),
+                    on ? R.drawable.ic_flash_off_white_48dp : R.drawable.ic_flash_on_white_48dp));
         }
     }
 
     @Subscribe
     public void productItemClicked(ProductItemClickedEvent event) {
         if(isTorchOn) {
-            barcodeScanner.setTorchOff();
+            setTorch(false);
         }
     }
 }
@@ -0,0 +1,42 @@
+package pl.pola_app.ui.scanner;
+
+/**
+ * Turns the camera preview into barcodes. An engine owns its preview view and the camera while it's resumed,
+ * the scanner only drives its lifecycle and gets the decoded codes back.
+ */
+public interface BarcodeDecoderEngine {
+    String ZXING = "zxing";
+    String VISION = "vision";
+
+    interface Listener {
+        /**
+         * Called on the main thread for every code decoded while decoding is on, the same code usually comes
+         * several times in a row.
+         */
+        void onBarcodeDecoded(String code, String format);
+    }
+
+    /**
+     * @return {@link #ZXING} or {@link #VISION}
+     */
+    String getName();
+
+    void setListener(Listener listener);
+
+    /**
+     * Opens the camera and shows the preview, the camera permission has to be granted by then.
+     */
+    void resume();
+
+    void pause();
+
+    void startDecoding();
+
+    void stopDecoding();
+
+    boolean hasTorch();
+
+    void setTorch(boolean on);
+
+    void release();
+}
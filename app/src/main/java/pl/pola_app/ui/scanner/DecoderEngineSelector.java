@@ -0,0 +1,173 @@
+package pl.pola_app.ui.scanner;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import pl.pola_app.BuildConfig;
+import pl.pola_app.helpers.Utils;
+import pl.pola_app.metrics.ScanTimings;
+import pl.pola_app.metrics.ScanTimings.Stage;
+import timber.log.Timber;
+
+/**
+ * Picks the {@link BarcodeDecoderEngine} which decodes camera frames fastest on this device.
+ * <p/>
+ * Each scanner session is timed from the per frame decode stages of {@link ScanTimings}, so the time the user spends
+ * aiming doesn't count. Until both engines have {@link #TRIAL_FRAMES} frames timed, each session goes to the one
+ * with fewer of them. After that the engine with the lower average time per frame is remembered and used until the
+ * app is updated. ZXing is remembered right away when Vision turns out not to be operational.
+ * <p/>
+ * Like {@link pl.pola_app.helpers.SessionManager} the stats are read once on a background thread when the app
+ * starts, sessions starting before that use ZXing.
+ */
+public class DecoderEngineSelector {
+    static final int TRIAL_FRAMES = 300;
+
+    private static final String PREF_ENGINE = "decoder_engine";
+    private static final String PREF_ENGINE_VERSION = "decoder_engine_version";
+    private static final String PREF_FRAMES = "decoder_engine_frames_";
+    private static final String PREF_MICROS = "decoder_engine_frame_micros_";
+
+    //stages making up the decoding of one frame, and the ones recorded exactly once per frame
+    private static final Stage[] ZXING_STAGES = {Stage.FRAME_DOWNSCALE, Stage.FRAME_DECODE_HALF,
+            Stage.FRAME_DECODE_FULL, Stage.FRAME_DECODE_THOROUGH};
+    private static final Stage[] ZXING_FRAME_STAGES = {Stage.FRAME_DECODE_HALF, Stage.FRAME_DECODE_FULL};
+    private static final Stage[] VISION_STAGES = {Stage.FRAME_DECODE_VISION};
+
+    private final Context context;
+    private final ScanTimings scanTimings;
+    private boolean loading;
+    private SharedPreferences preferences;
+    private String chosenEngine;
+    private final long[] frames = new long[2];
+    private final long[] totalMicros = new long[2];
+
+    private String timedEngine;
+    private long framesAtStart;
+    private long microsAtStart;
+
+    public DecoderEngineSelector(Context context, ScanTimings scanTimings) {
+        this.context = context;
+        this.scanTimings = scanTimings;
+    }
+
+    public synchronized void load() {
+        if (loading) {
+            return;
+        }
+        loading = true;
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                SharedPreferences pref = Utils.getDefaultSharedPreferences(context);
+                synchronized (DecoderEngineSelector.this) {
+                    //Vision may have been found not operational in the meantime
+                    if (chosenEngine == null && pref.getInt(PREF_ENGINE_VERSION, 0) == BuildConfig.VERSION_CODE) {
+                        chosenEngine = pref.getString(PREF_ENGINE, null);
+                    }
+                    for (int i = 0; i < frames.length; i++) {
+                        frames[i] = pref.getLong(PREF_FRAMES + engineName(i), 0);
+                        totalMicros[i] = pref.getLong(PREF_MICROS + engineName(i), 0);
+                    }
+                    preferences = pref;
+                }
+            }
+        }, "DecoderEngineSelector").start();
+    }
+
+    /**
+     * @return the engine to try first, {@link BarcodeDecoderEngine#VISION} may still turn out not operational
+     */
+    public synchronized String select() {
+        if (chosenEngine != null) {
+            return chosenEngine;
+        }
+        if (preferences == null) {
+            //the stats aren't read yet, ZXing works everywhere
+            load();
+            return BarcodeDecoderEngine.ZXING;
+        }
+        return frames[index(BarcodeDecoderEngine.VISION)] < frames[index(BarcodeDecoderEngine.ZXING)]
+                ? BarcodeDecoderEngine.VISION : BarcodeDecoderEngine.ZXING;
+    }
+
+    /**
+     * Remembers ZXing when Vision can't be used, so a Vision detector isn't built for every session.
+     */
+    public synchronized void visionUnavailable() {
+        chosenEngine = BarcodeDecoderEngine.ZXING;
+        if (preferences != null) {
+            preferences.edit()
+                    .putString(PREF_ENGINE, chosenEngine)
+                    .putInt(PREF_ENGINE_VERSION, BuildConfig.VERSION_CODE)
+                    .apply();
+        }
+    }
+
+    /**
+     * Starts timing the frames the engine decodes, until {@link #stopTiming()}.
+     */
+    public synchronized void startTiming(String engine) {
+        timedEngine = null;
+        if (chosenEngine != null || preferences == null) {
+            return;
+        }
+        timedEngine = engine;
+        framesAtStart = countFrames(engine);
+        microsAtStart = sumMicros(engine);
+    }
+
+    public synchronized void stopTiming() {
+        String engine = timedEngine;
+        timedEngine = null;
+        if (engine == null || chosenEngine != null) {
+            return;
+        }
+        long sessionFrames = countFrames(engine) - framesAtStart;
+        if (sessionFrames <= 0) {
+            return;
+        }
+        int i = index(engine);
+        frames[i] += sessionFrames;
+        totalMicros[i] += sumMicros(engine) - microsAtStart;
+        SharedPreferences.Editor editor = preferences.edit()
+                .putLong(PREF_FRAMES + engine, frames[i])
+                .putLong(PREF_MICROS + engine, totalMicros[i]);
+        if (frames[0] >= TRIAL_FRAMES && frames[1] >= TRIAL_FRAMES) {
+            chosenEngine = averageMicros(0) <= averageMicros(1) ? engineName(0) : engineName(1);
+            editor.putString(PREF_ENGINE, chosenEngine)
+                    .putInt(PREF_ENGINE_VERSION, BuildConfig.VERSION_CODE);
+            Timber.d("Decoder engine " + chosenEngine + " chosen, zxing " + averageMicros(0)
+                    + "us, vision " + averageMicros(1) + "us per frame");
+        }
+        editor.apply();
+    }
+
+    private long countFrames(String engine) {
+        long count = 0;
+        for (Stage stage : BarcodeDecoderEngine.VISION.equals(engine) ? VISION_STAGES : ZXING_FRAME_STAGES) {
+            count += scanTimings.getCount(stage);
+        }
+        return count;
+    }
+
+    private long sumMicros(String engine) {
+        long micros = 0;
+        for (Stage stage : BarcodeDecoderEngine.VISION.equals(engine) ? VISION_STAGES : ZXING_STAGES) {
+            micros += scanTimings.getTotalMicros(stage);
+        }
+        return micros;
+    }
+
+    private long averageMicros(int i) {
+        return totalMicros[i] / Math.max(1, frames[i]);
+    }
+
+    private static int index(String engine) {
+        return BarcodeDecoderEngine.VISION.equals(engine) ? 1 : 0;
+    }
+
+    private static String engineName(int index) {
+        return index == 1 ? BarcodeDecoderEngine.VISION : BarcodeDecoderEngine.ZXING;
+    }
+}
@@ -0,0 +1,44 @@
+package pl.pola_app.ui.scanner;
+
+/**
+ * The part of the camera preview barcodes are looked for in, and copying it out of luminance frames.
+ * Frames are row-major, one byte per pixel.
+ */
+public final class FrameRoi {
+    /** Share of the screen width the region takes, centered. */
+    public static final float WIDTH = 0.9f;
+    /** Share of the screen height the region takes, centered. */
+    public static final float HEIGHT = 0.25f;
+
+    private FrameRoi() {
+    }
+
+    /**
+     * Copies a {@code width} x {@code height} region starting at {@code left}, {@code top} into {@code dst}.
+     */
+    static void crop(byte[] src, int srcWidth, int left, int top, int width, int height, byte[] dst) {
+        for (int y = 0; y < height; y++) {
+            System.arraycopy(src, (top + y) * srcWidth + left, dst, y * width, width);
+        }
+    }
+
+    /**
+     * Halves the frame in both directions, every pixel of {@code dst} is the average of a 2x2 block. Averaging keeps
+     * the edges of bars thinner than two pixels, which just skipping every other pixel would lose.
+     * {@code dst} has to hold {@code (width / 2) * (height / 2)} bytes.
+     */
+    static void subsample(byte[] src, int width, int height, byte[] dst) {
+        int halfWidth = width / 2;
+        int halfHeight = height / 2;
+        for (int y = 0; y < halfHeight; y++) {
+            int top = 2 * y * width;
+            int bottom = top + width;
+            int out = y * halfWidth;
+            for (int x = 0; x < halfWidth; x++) {
+                int sum = (src[top + 2 * x] & 0xff) + (src[top + 2 * x + 1] & 0xff)
+                        + (src[bottom + 2 * x] & 0xff) + (src[bottom + 2 * x + 1] & 0xff);
+                dst[out + x] = (byte) ((sum + 2) >> 2);
+            }
+        }
+    }
+}
@@ -0,0 +1,275 @@
+package pl.pola_app.ui.scanner;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.BinaryBitmap;
+import com.google.zxing.DecodeHintType;
+import com.google.zxing.LuminanceSource;
+import com.google.zxing.MultiFormatReader;
+import com.google.zxing.PlanarYUVLuminanceSource;
+import com.google.zxing.ReaderException;
+import com.google.zxing.Result;
+import com.google.zxing.common.HybridBinarizer;
+import com.journeyapps.barcodescanner.Decoder;
+import com.journeyapps.barcodescanner.DecoderFactory;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import pl.pola_app.metrics.ScanTimings;
+import timber.log.Timber;
+
+/**
+ * {@link RetailDecoderFactory} spread over several worker threads.
+ * <p/>
+ * The barcode view's decoder thread asks for the next camera frame only once the decoder returns. The decoders made
+ * here just copy the frame into one of a fixed ring of reusable buffers and hand it over to the workers, so frames
+ * keep coming while earlier ones are being decoded. Only the newest frame waits for a free worker: a waiting frame
+ * replaced by a newer one is dropped as stale, as are frames arriving while every buffer is taken.
+ * Frames the {@link ScanGovernor} says can be skipped aren't copied at all. The first code found wins. It is
+ * returned for the next frame, and frames of the same decoder already waiting or being decoded by then are ignored.
+ * <p/>
+ * The barcode view has already cropped the frame to the framing rect. Wide frames are halved in both directions
+ * before decoding, which makes decoding several times cheaper and is still enough for a barcode filling the box.
+ * After {@link #FULL_RESOLUTION_AFTER_MISSES} frames in a row without a code the next as many are decoded at full
+ * resolution instead, for small or distant codes, and then it's back to half. The time each step takes is recorded
+ * in {@link ScanTimings}.
+ * <p/>
+ * Workers are shared by all decoders made by one factory, {@link #shutdown()} stops them.
+ */
+public class PipelinedDecoderFactory implements DecoderFactory {
+    static final int FULL_RESOLUTION_AFTER_MISSES = 8;
+    //narrower frames would leave less than two pixels per bar of a barcode filling the box
+    static final int MIN_SUBSAMPLED_WIDTH = 640;
+
+    private static class Frame {
+        byte[] luminance = new byte[0];
+        int width;
+        int height;
+        PipelinedDecoder decoder;
+    }
+
+    private final RetailDecoderFactory retailDecoderFactory;
+    private final ScanTimings scanTimings;
+    private final ScanGovernor scanGovernor;
+    private final Thread[] workers;
+    private final BlockingQueue<Frame> freeFrames;
+    private final Object lock = new Object();
+    private Frame pendingFrame;
+    private volatile PipelinedDecoder currentDecoder;
+    private final AtomicInteger droppedFrames = new AtomicInteger();
+
+    /**
+     * @return workers worth starting on this device, one core is left for the camera and the UI
+     */
+    public static int workerCount() {
+        return Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+    }
+
+    public PipelinedDecoderFactory(Collection<BarcodeFormat> formats, int workerCount, ScanTimings scanTimings,
+                                   ScanGovernor scanGovernor) {
+        retailDecoderFactory = new RetailDecoderFactory(formats);
+        this.scanTimings = scanTimings;
+        this.scanGovernor = scanGovernor;
+        //a frame for each worker, one waiting and one being copied
+        freeFrames = new ArrayBlockingQueue<>(workerCount + 2);
+        for (int i = 0; i < workerCount + 2; i++) {
+            freeFrames.add(new Frame());
+        }
+        workers = new Thread[workerCount];
+        for (int i = 0; i < workerCount; i++) {
+            workers[i] = new Thread(new Worker(), "FrameDecoder-" + i);
+            workers[i].setDaemon(true);
+            workers[i].start();
+        }
+    }
+
+    @Override
+    public Decoder createDecoder(Map<DecodeHintType, ?> baseHints) {
+        PipelinedDecoder decoder = new PipelinedDecoder(retailDecoderFactory.createReader(baseHints, false));
+        currentDecoder = decoder;
+        return decoder;
+    }
+
+    public void shutdown() {
+        currentDecoder = null;
+        for (Thread worker : workers) {
+            worker.interrupt();
+        }
+    }
+
+    /**
+     * @return frames skipped because a newer one came or no buffer was free
+     */
+    public int getDroppedFrames() {
+        return droppedFrames.get();
+    }
+
+    private void submit(Frame frame) {
+        synchronized (lock) {
+            if (pendingFrame != null) {
+                droppedFrames.incrementAndGet();
+                pendingFrame.decoder = null;
+                freeFrames.offer(pendingFrame);
+            }
+            pendingFrame = frame;
+            lock.notify();
+        }
+    }
+
+    private Frame take() throws InterruptedException {
+        synchronized (lock) {
+            while (pendingFrame == null) {
+                lock.wait();
+            }
+            Frame frame = pendingFrame;
+            pendingFrame = null;
+            return frame;
+        }
+    }
+
+    private class PipelinedDecoder extends Decoder {
+        final AtomicReference<Result> result = new AtomicReference<>();
+        final AtomicInteger misses = new AtomicInteger();
+        private byte[] row = new byte[0];
+
+        PipelinedDecoder(MultiFormatReader reader) {
+            //never used, the workers have their own readers
+            super(reader);
+        }
+
+        @Override
+        public Result decode(LuminanceSource source) {
+            Result found = result.getAndSet(null);
+            if (found != null) {
+                //in continuous mode decoding goes on, so the scanner can confirm the code with a later frame
+                return found;
+            }
+            if (!scanGovernor.shouldDecode(source)) {
+                return null;
+            }
+
+            Frame frame = freeFrames.poll();
+            if (frame == null) {
+                droppedFrames.incrementAndGet();
+                return null;
+            }
+            long start = System.nanoTime();
+            copy(source, frame);
+            scanTimings.record(ScanTimings.Stage.FRAME_ROI, start);
+            frame.decoder = this;
+            submit(frame);
+            return null;
+        }
+
+        private void copy(LuminanceSource source, Frame frame) {
+            int width = source.getWidth();
+            int height = source.getHeight();
+            if (frame.luminance.length < width * height) {
+                frame.luminance = new byte[width * height];
+            }
+            if (row.length < width) {
+                row = new byte[width];
+            }
+            for (int y = 0; y < height; y++) {
+                System.arraycopy(source.getRow(y, row), 0, frame.luminance, y * width, width);
+            }
+            frame.width = width;
+            frame.height = height;
+        }
+    }
+
+    private class Worker implements Runnable {
+        //readers aren't thread safe, each worker has its own
+        private final MultiFormatReader fastReader =
+                retailDecoderFactory.createReader(Collections.<DecodeHintType, Object>emptyMap(), false);
+        private final MultiFormatReader thoroughReader =
+                retailDecoderFactory.createReader(Collections.<DecodeHintType, Object>emptyMap(), true);
+        private byte[] halfLuminance = new byte[0];
+
+        @Override
+        public void run() {
+            try {
+                while (true) {
+                    Frame frame = take();
+                    try {
+                        decode(frame);
+                    } finally {
+                        frame.decoder = null;
+                        freeFrames.offer(frame);
+                    }
+                }
+            } catch (InterruptedException e) {
+                Timber.d(Thread.currentThread().getName() + " stopped, " + droppedFrames.get() + " frames dropped");
+            }
+        }
+
+        private void decode(Frame frame) {
+            PipelinedDecoder decoder = frame.decoder;
+            if (decoder == null || decoder != currentDecoder || decoder.result.get() != null) {
+                //decoding stopped or another worker already found the code
+                return;
+            }
+            boolean halfResolution = frame.width >= MIN_SUBSAMPLED_WIDTH
+                    && (decoder.misses.get() / FULL_RESOLUTION_AFTER_MISSES) % 2 == 0;
+            BinaryBitmap bitmap = null;
+            Result found;
+            if (halfResolution) {
+                found = decodeHalf(frame);
+            } else {
+                bitmap = bitmap(frame.luminance, frame.width, frame.height);
+                long start = System.nanoTime();
+                found = decode(fastReader, bitmap);
+                scanTimings.record(ScanTimings.Stage.FRAME_DECODE_FULL, start);
+            }
+            if (found == null && decoder.misses.incrementAndGet() % RetailDecoderFactory.TRY_HARDER_EVERY == 0) {
+                if (bitmap == null) {
+                    bitmap = bitmap(frame.luminance, frame.width, frame.height);
+                }
+                long start = System.nanoTime();
+                found = decode(thoroughReader, bitmap);
+                scanTimings.record(ScanTimings.Stage.FRAME_DECODE_THOROUGH, start);
+            }
+            if (found != null) {
+                //the next barcode starts at half resolution again
+                decoder.misses.set(0);
+                decoder.result.compareAndSet(null, found);
+            }
+        }
+
+        private Result decodeHalf(Frame frame) {
+            long start = System.nanoTime();
+            int width = frame.width / 2;
+            int height = frame.height / 2;
+            if (halfLuminance.length < width * height) {
+                halfLuminance = new byte[width * height];
+            }
+            FrameRoi.subsample(frame.luminance, frame.width, frame.height, halfLuminance);
+            scanTimings.record(ScanTimings.Stage.FRAME_DOWNSCALE, start);
+
+            start = System.nanoTime();
+            Result found = decode(fastReader, bitmap(halfLuminance, width, height));
+            scanTimings.record(ScanTimings.Stage.FRAME_DECODE_HALF, start);
+            return found;
+        }
+
+        private BinaryBitmap bitmap(byte[] luminance, int width, int height) {
+            return new BinaryBitmap(new HybridBinarizer(new PlanarYUVLuminanceSource(
+                    luminance, width, height, 0, 0, width, height, false)));
+        }
+
+        private Result decode(MultiFormatReader reader, BinaryBitmap bitmap) {
+            try {
+                return reader.decodeWithState(bitmap);
+            } catch (ReaderException e) {
+                return null;
+            } finally {
+                reader.reset();
+            }
+        }
+    }
+}
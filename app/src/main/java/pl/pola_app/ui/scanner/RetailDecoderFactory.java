@@ -0,0 +1,90 @@
+package pl.pola_app.ui.scanner;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.BinaryBitmap;
+import com.google.zxing.DecodeHintType;
+import com.google.zxing.MultiFormatReader;
+import com.google.zxing.ReaderException;
+import com.google.zxing.Result;
+import com.journeyapps.barcodescanner.Decoder;
+import com.journeyapps.barcodescanner.DecoderFactory;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Map;
+
+/**
+ * Creates decoders which only look for the barcodes printed on products instead of trying every format ZXing knows
+ * (QR, DataMatrix, PDF417, Aztec...) on each frame.
+ * <p/>
+ * Frames are decoded without {@link DecodeHintType#TRY_HARDER} first. Only every {@link #TRY_HARDER_EVERY}th frame in
+ * a row without a result is decoded again with it, for worn, curved or badly lit codes.
+ * The frame is already cropped to the framing rectangle by the barcode view before it gets here.
+ */
+public class RetailDecoderFactory implements DecoderFactory {
+    /** What Pola looks products up by. */
+    public static final Collection<BarcodeFormat> RETAIL_FORMATS = Collections.unmodifiableSet(EnumSet.of(
+            BarcodeFormat.EAN_13, BarcodeFormat.EAN_8, BarcodeFormat.UPC_A, BarcodeFormat.UPC_E));
+    /** Also reads ITF-14 printed on outer cartons. */
+    public static final Collection<BarcodeFormat> RETAIL_AND_CARTON_FORMATS = Collections.unmodifiableSet(EnumSet.of(
+            BarcodeFormat.EAN_13, BarcodeFormat.EAN_8, BarcodeFormat.UPC_A, BarcodeFormat.UPC_E, BarcodeFormat.ITF));
+
+    static final int TRY_HARDER_EVERY = 4;
+
+    private final Collection<BarcodeFormat> formats;
+
+    public RetailDecoderFactory(Collection<BarcodeFormat> formats) {
+        this.formats = formats;
+    }
+
+    @Override
+    public Decoder createDecoder(Map<DecodeHintType, ?> baseHints) {
+        return new RetailDecoder(createReader(baseHints, false), createReader(baseHints, true));
+    }
+
+    MultiFormatReader createReader(Map<DecodeHintType, ?> baseHints, boolean tryHarder) {
+        Map<DecodeHintType, Object> hints = new EnumMap<>(DecodeHintType.class);
+        hints.putAll(baseHints);
+        hints.put(DecodeHintType.POSSIBLE_FORMATS, formats);
+        if (tryHarder) {
+            hints.put(DecodeHintType.TRY_HARDER, Boolean.TRUE);
+        }
+        MultiFormatReader reader = new MultiFormatReader();
+        reader.setHints(hints);
+        return reader;
+    }
+
+    private static class RetailDecoder extends Decoder {
+        private final MultiFormatReader thoroughReader;
+        private int misses;
+
+        RetailDecoder(MultiFormatReader fastReader, MultiFormatReader thoroughReader) {
+            super(fastReader);
+            this.thoroughReader = thoroughReader;
+        }
+
+        @Override
+        protected Result decode(BinaryBitmap bitmap) {
+            Result result = super.decode(bitmap);
+            if (result == null && ++misses % TRY_HARDER_EVERY == 0) {
+                result = decodeThoroughly(bitmap);
+            }
+            if (result != null) {
+                misses = 0;
+            }
+            return result;
+        }
+
+        private Result decodeThoroughly(BinaryBitmap bitmap) {
+            try {
+                return thoroughReader.decodeWithState(bitmap);
+            } catch (ReaderException e) {
+                return null;
+            } finally {
+                thoroughReader.reset();
+            }
+        }
+    }
+}
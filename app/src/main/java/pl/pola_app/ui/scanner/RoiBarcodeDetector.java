@@ -0,0 +1,108 @@
+package pl.pola_app.ui.scanner;
+
+import android.graphics.ImageFormat;
+import android.util.SparseArray;
+
+import com.google.android.gms.vision.Detector;
+import com.google.android.gms.vision.Frame;
+import com.google.android.gms.vision.barcode.Barcode;
+import com.google.zxing.PlanarYUVLuminanceSource;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import pl.pola_app.metrics.ScanTimings;
+
+/**
+ * Passes only the {@link FrameRoi} band of every camera frame to the wrapped detector. {@link android.hardware.Camera}
+ * gives frames in the sensor's landscape orientation, so for a portrait screen the band is turned with the frame.
+ * Frames the {@link ScanGovernor} says can be skipped aren't passed on.
+ * Runs on the detector thread, one frame at a time, so the cropped frame's buffer is reused, as is the copy of frames
+ * whose data isn't backed by an array.
+ */
+class RoiBarcodeDetector extends Detector<Barcode> {
+
+    private final Detector<Barcode> detector;
+    private final ScanTimings scanTimings;
+    private final ScanGovernor scanGovernor;
+    private byte[] roi = new byte[0];
+    private byte[] frameCopy = new byte[0];
+
+    RoiBarcodeDetector(Detector<Barcode> detector, ScanTimings scanTimings, ScanGovernor scanGovernor) {
+        this.detector = detector;
+        this.scanTimings = scanTimings;
+        this.scanGovernor = scanGovernor;
+    }
+
+    @Override
+    public SparseArray<Barcode> detect(Frame frame) {
+        Frame.Metadata metadata = frame.getMetadata();
+        ByteBuffer data = frame.getGrayscaleImageData();
+        if (data == null) {
+            return decode(frame);
+        }
+
+        long start = System.nanoTime();
+        byte[] pixels;
+        if (data.hasArray() && data.arrayOffset() == 0) {
+            pixels = data.array();
+        } else {
+            //direct buffers have no array to crop from, copying the luminance plane is enough
+            int length = metadata.getWidth() * metadata.getHeight();
+            if (frameCopy.length < length) {
+                frameCopy = new byte[length];
+            }
+            ByteBuffer source = data.duplicate();
+            source.position(0);
+            source.get(frameCopy, 0, length);
+            pixels = frameCopy;
+        }
+        boolean sideways = metadata.getRotation() == Frame.ROTATION_90 || metadata.getRotation() == Frame.ROTATION_270;
+        //NV21 needs even sizes
+        int width = (int) (metadata.getWidth() * (sideways ? FrameRoi.HEIGHT : FrameRoi.WIDTH)) & ~1;
+        int height = (int) (metadata.getHeight() * (sideways ? FrameRoi.WIDTH : FrameRoi.HEIGHT)) & ~1;
+        int left = ((metadata.getWidth() - width) / 2) & ~1;
+        int top = ((metadata.getHeight() - height) / 2) & ~1;
+        int size = width * height * 3 / 2;
+        if (roi.length != size) {
+            roi = new byte[size];
+            //no color, only the luminance is looked at
+            Arrays.fill(roi, width * height, size, (byte) 128);
+        }
+        FrameRoi.crop(pixels, metadata.getWidth(), left, top, width, height, roi);
+        if (!scanGovernor.shouldDecode(new PlanarYUVLuminanceSource(roi, width, height, 0, 0, width, height, false))) {
+            return new SparseArray<>();
+        }
+        Frame cropped = new Frame.Builder()
+                .setImageData(ByteBuffer.wrap(roi), width, height, ImageFormat.NV21)
+                .setId(metadata.getId())
+                .setTimestampMillis(metadata.getTimestampMillis())
+                .setRotation(metadata.getRotation())
+                .build();
+        scanTimings.record(ScanTimings.Stage.FRAME_ROI, start);
+        return decode(cropped);
+    }
+
+    private SparseArray<Barcode> decode(Frame frame) {
+        long start = System.nanoTime();
+        SparseArray<Barcode> barcodes = detector.detect(frame);
+        scanTimings.record(ScanTimings.Stage.FRAME_DECODE_VISION, start);
+        return barcodes;
+    }
+
+    @Override
+    public boolean isOperational() {
+        return detector.isOperational();
+    }
+
+    @Override
+    public boolean setFocus(int id) {
+        return detector.setFocus(id);
+    }
+
+    @Override
+    public void release() {
+        detector.release();
+        super.release();
+    }
+}
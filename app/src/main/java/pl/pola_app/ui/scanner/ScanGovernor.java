@@ -0,0 +1,154 @@
+package pl.pola_app.ui.scanner;
+
+import android.os.SystemClock;
+
+import com.google.zxing.LuminanceSource;
+
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps a scanned barcode from being scanned again while it's still in front of the camera, without waiting out a
+ * fixed delay, so the next product is accepted as soon as it's decoded.
+ * <p/>
+ * After a code is accepted it's held together with a coarse luminance signature of the frame it was seen in.
+ * While the camera keeps looking at the same picture frames aren't decoded at all. Once it moves frames are decoded
+ * again: a different code is accepted right away, the held one again just moves the reference picture to where the
+ * camera is now. After {@link #RELEASE_AFTER_FRAMES} moving frames without the held code it's let go, so a product
+ * can be scanned again once the camera has been pointed elsewhere.
+ * <p/>
+ * {@link #shouldDecode(LuminanceSource)} is called on the engine's frame thread, the rest on the main thread.
+ */
+public class ScanGovernor {
+    static final int RELEASE_AFTER_FRAMES = 15;
+    //mean difference of the signature cells, out of 255, that counts as the camera looking at something else
+    static final int MOTION_THRESHOLD = 10;
+    private static final int GRID_ROWS = 8;
+    private static final int GRID_COLUMNS = 32;
+
+    private int[] signature = new int[GRID_ROWS * GRID_COLUMNS];
+    private int[] lastSignature = new int[GRID_ROWS * GRID_COLUMNS];
+    private final int[] heldSignature = new int[GRID_ROWS * GRID_COLUMNS];
+    private boolean hasLastSignature;
+    private boolean hasHeldSignature;
+    private byte[] row = new byte[0];
+    private String heldCode;
+    private int framesWithoutHeldCode;
+
+    private int acceptedCount;
+    private final Set<String> acceptedCodes = new HashSet<>();
+    private long firstAcceptedAt;
+    private long lastAcceptedAt;
+
+    /**
+     * @return false if the camera still looks at the code which was just accepted and the frame can be skipped
+     */
+    public synchronized boolean shouldDecode(LuminanceSource source) {
+        //a few rows of the frame are read, cheap enough to do under the lock the main thread takes too
+        computeSignature(source, signature);
+        int[] current = signature;
+        signature = lastSignature;
+        lastSignature = current;
+        hasLastSignature = true;
+
+        if (heldCode == null) {
+            return true;
+        }
+        if (hasHeldSignature && difference(current, heldSignature) < MOTION_THRESHOLD) {
+            return false;
+        }
+        if (++framesWithoutHeldCode > RELEASE_AFTER_FRAMES) {
+            heldCode = null;
+        }
+        return true;
+    }
+
+    /**
+     * @return true if the camera is still on the code accepted last, it mustn't be reported again
+     */
+    public synchronized boolean isHeld(String code) {
+        if (heldCode == null || !heldCode.equals(code)) {
+            return false;
+        }
+        holdCurrentPicture();
+        return true;
+    }
+
+    public synchronized void accepted(String code) {
+        heldCode = code;
+        holdCurrentPicture();
+
+        long now = SystemClock.elapsedRealtime();
+        if (acceptedCount++ == 0) {
+            firstAcceptedAt = now;
+        }
+        acceptedCodes.add(code);
+        lastAcceptedAt = now;
+    }
+
+    public synchronized void reset() {
+        heldCode = null;
+        hasHeldSignature = false;
+        hasLastSignature = false;
+    }
+
+    /**
+     * @return how many codes were accepted per minute between the first and the last one, and how many of them
+     * were distinct
+     */
+    public synchronized String report() {
+        long elapsed = lastAcceptedAt - firstAcceptedAt;
+        float perMinute = elapsed > 0 ? acceptedCount * (float) TimeUnit.MINUTES.toMillis(1) / elapsed : 0;
+        return String.format(Locale.US, "scans per minute: %.1f (%d, %d distinct)", perMinute, acceptedCount,
+                acceptedCodes.size());
+    }
+
+    private void holdCurrentPicture() {
+        framesWithoutHeldCode = 0;
+        hasHeldSignature = hasLastSignature;
+        if (hasLastSignature) {
+            System.arraycopy(lastSignature, 0, heldSignature, 0, heldSignature.length);
+        }
+    }
+
+    //average luminance of GRID_COLUMNS segments of GRID_ROWS evenly spaced rows
+    private void computeSignature(LuminanceSource source, int[] signature) {
+        int width = source.getWidth();
+        int height = source.getHeight();
+        if (row.length < width) {
+            row = new byte[width];
+        }
+        int segment = Math.max(1, width / GRID_COLUMNS);
+        for (int r = 0; r < GRID_ROWS; r++) {
+            byte[] luminance = source.getRow((2 * r + 1) * height / (2 * GRID_ROWS), row);
+            for (int c = 0; c < GRID_COLUMNS; c++) {
+                int start = Math.min(c * segment, width - 1);
+                int end = Math.min(start + segment, width);
+                int sum = 0;
+                for (int x = start; x < end; x++) {
+                    sum += luminance[x] & 0xff;
+                }
+                signature[r * GRID_COLUMNS + c] = sum / (end - start);
+            }
+        }
+    }
+
+    //mean absolute difference with the overall brightness taken out, so auto exposure alone doesn't count as motion
+    private static int difference(int[] a, int[] b) {
+        int meanA = 0;
+        int meanB = 0;
+        for (int i = 0; i < a.length; i++) {
+            meanA += a[i];
+            meanB += b[i];
+        }
+        meanA /= a.length;
+        meanB /= b.length;
+        int sum = 0;
+        for (int i = 0; i < a.length; i++) {
+            sum += Math.abs((a[i] - meanA) - (b[i] - meanB));
+        }
+        return sum / a.length;
+    }
+}
@@ -0,0 +1,169 @@
+package pl.pola_app.ui.scanner;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.DisplayMetrics;
+import android.util.SparseArray;
+import android.view.View;
+
+import com.google.android.gms.common.ConnectionResult;
+import com.google.android.gms.common.GoogleApiAvailability;
+import com.google.android.gms.vision.CameraSource;
+import com.google.android.gms.vision.Detector;
+import com.google.android.gms.vision.barcode.Barcode;
+import com.google.android.gms.vision.barcode.BarcodeDetector;
+
+import java.io.IOException;
+
+import pl.pola_app.metrics.ScanTimings;
+import timber.log.Timber;
+
+/**
+ * Google Mobile Vision barcode detector fed by a {@link CameraSource} shown in a {@link CameraSourcePreview}.
+ * The detector sees only the {@link FrameRoi} band of each frame.
+ * It needs Play Services and the detector's native libraries, which are downloaded after the app is installed,
+ * so check {@link #isOperational()} before using it.
+ */
+public class VisionDecoderEngine implements BarcodeDecoderEngine {
+    //Good explanation https://github.com/googlesamples/android-vision/blob/master/visionSamples/barcode-reader/app/src/main/java/com/google/android/gms/samples/vision/barcodereader/BarcodeCaptureActivity.java
+
+    private static final int RETAIL_FORMATS = Barcode.EAN_13 | Barcode.EAN_8 | Barcode.UPC_A | Barcode.UPC_E;
+    private static final float REQUESTED_FPS = 15.0f;
+
+    private final Context context;
+    private final CameraSourcePreview preview;
+    private final RoiBarcodeDetector barcodeDetector;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private CameraSource cameraSource;
+    private Listener listener;
+    private volatile boolean isDecoding;
+
+    public VisionDecoderEngine(Context context, CameraSourcePreview preview, ScanTimings scanTimings,
+                               ScanGovernor scanGovernor) {
+        this.context = context.getApplicationContext();
+        this.preview = preview;
+        barcodeDetector = new RoiBarcodeDetector(new BarcodeDetector.Builder(this.context)
+                .setBarcodeFormats(RETAIL_FORMATS)
+                .build(), scanTimings, scanGovernor);
+        barcodeDetector.setProcessor(frameProcessor);
+    }
+
+    /**
+     * @return false if Play Services are missing or the detector libraries aren't downloaded yet
+     */
+    public boolean isOperational() {
+        return GoogleApiAvailability.getInstance().isGooglePlayServicesAvailable(context) == ConnectionResult.SUCCESS
+                && barcodeDetector.isOperational();
+    }
+
+    @Override
+    public String getName() {
+        return VISION;
+    }
+
+    @Override
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    @Override
+    public void resume() {
+        preview.setVisibility(View.VISIBLE);
+        if (cameraSource == null) {
+            cameraSource = createCameraSource();
+        }
+        try {
+            preview.start(cameraSource);
+        } catch (IOException | SecurityException e) {
+            Timber.e(e, "Unable to start camera source");
+        }
+    }
+
+    @Override
+    public void pause() {
+        preview.stop();
+    }
+
+    @Override
+    public void startDecoding() {
+        isDecoding = true;
+    }
+
+    @Override
+    public void stopDecoding() {
+        isDecoding = false;
+    }
+
+    @Override
+    public boolean hasTorch() {
+        //CameraSource doesn't expose the camera parameters
+        return false;
+    }
+
+    @Override
+    public void setTorch(boolean on) {
+    }
+
+    @Override
+    public void release() {
+        isDecoding = false;
+        preview.release();
+        cameraSource = null;
+        barcodeDetector.release();
+    }
+
+    private CameraSource createCameraSource() {
+        DisplayMetrics metrics = context.getResources().getDisplayMetrics();
+        int width = metrics.widthPixels > 0 ? metrics.widthPixels : 720;
+        int height = metrics.heightPixels > 0 ? metrics.heightPixels : 1280;
+        return new CameraSource.Builder(context, barcodeDetector)
+                .setFacing(CameraSource.CAMERA_FACING_BACK)
+                .setRequestedPreviewSize(width, height)
+                .setRequestedFps(REQUESTED_FPS)
+                .setAutoFocusEnabled(true)
+                .build();
+    }
+
+    private static String formatName(int format) {
+        switch (format) {
+            case Barcode.EAN_13:
+                return "EAN_13";
+            case Barcode.EAN_8:
+                return "EAN_8";
+            case Barcode.UPC_A:
+                return "UPC_A";
+            case Barcode.UPC_E:
+                return "UPC_E";
+            default:
+                return Integer.toString(format);
+        }
+    }
+
+    //called on the detector thread for every processed frame
+    private final Detector.Processor<Barcode> frameProcessor = new Detector.Processor<Barcode>() {
+        @Override
+        public void release() {
+        }
+
+        @Override
+        public void receiveDetections(Detector.Detections<Barcode> detections) {
+            SparseArray<Barcode> barcodes = detections.getDetectedItems();
+            if (!isDecoding || barcodes == null || barcodes.size() == 0) {
+                return;
+            }
+            final Barcode barcode = barcodes.valueAt(0);
+            if (barcode == null || barcode.displayValue == null) {
+                return;
+            }
+            mainHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    if (isDecoding && listener != null) {
+                        listener.onBarcodeDecoded(barcode.displayValue, formatName(barcode.format));
+                    }
+                }
+            });
+        }
+    };
+}
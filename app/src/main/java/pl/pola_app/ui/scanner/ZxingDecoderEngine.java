@@ -0,0 +1,95 @@
+package pl.pola_app.ui.scanner;
+
+import android.view.View;
+
+import com.google.zxing.ResultPoint;
+import com.journeyapps.barcodescanner.BarcodeCallback;
+import com.journeyapps.barcodescanner.BarcodeResult;
+import com.journeyapps.barcodescanner.CompoundBarcodeView;
+
+import java.util.List;
+
+import pl.pola_app.metrics.ScanTimings;
+
+/**
+ * ZXing decoding frames of a {@link CompoundBarcodeView} on a pool of worker threads.
+ */
+public class ZxingDecoderEngine implements BarcodeDecoderEngine {
+
+    private final CompoundBarcodeView barcodeView;
+    private final PipelinedDecoderFactory decoderFactory;
+    private Listener listener;
+
+    public ZxingDecoderEngine(CompoundBarcodeView barcodeView, ScanTimings scanTimings, ScanGovernor scanGovernor) {
+        this.barcodeView = barcodeView;
+        decoderFactory = new PipelinedDecoderFactory(RetailDecoderFactory.RETAIL_FORMATS,
+                PipelinedDecoderFactory.workerCount(), scanTimings, scanGovernor);
+        barcodeView.getBarcodeView().setDecoderFactory(decoderFactory);
+        barcodeView.setVisibility(View.VISIBLE);
+    }
+
+    @Override
+    public String getName() {
+        return ZXING;
+    }
+
+    @Override
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    @Override
+    public void resume() {
+        barcodeView.resume();
+    }
+
+    @Override
+    public void pause() {
+        barcodeView.setTorchOff();
+        barcodeView.pause();
+    }
+
+    @Override
+    public void startDecoding() {
+        barcodeView.decodeContinuous(callback);
+    }
+
+    @Override
+    public void stopDecoding() {
+        barcodeView.getBarcodeView().stopDecoding();
+        barcodeView.setStatusText("");
+    }
+
+    @Override
+    public boolean hasTorch() {
+        return true;
+    }
+
+    @Override
+    public void setTorch(boolean on) {
+        if (on) {
+            barcodeView.setTorchOn();
+        } else {
+            barcodeView.setTorchOff();
+        }
+    }
+
+    @Override
+    public void release() {
+        decoderFactory.shutdown();
+    }
+
+    //results are delivered on the main thread
+    private final BarcodeCallback callback = new BarcodeCallback() {
+        @Override
+        public void barcodeResult(BarcodeResult result) {
+            if (result.getText() != null && listener != null) {
+                listener.onBarcodeDecoded(result.getText(), result.getBarcodeFormat().toString());
+            }
+        }
+
+        @Override
+        public void possibleResultPoints(List<ResultPoint> resultPoints) {
+        }
+    };
+}
@@ -0,0 +1,43 @@
+package pl.pola_app.helpers;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class EanTest {
+
+    @Test
+    public void acceptsCorrectCheckDigits() {
+        assertTrue(Ean.isValid("5901234123457"));
+        assertTrue(Ean.isValid("4006381333931"));
+        assertTrue(Ean.isValid("96385074"));
+        assertTrue(Ean.isValid("0036000291452"));
+    }
+
+    @Test
+    public void rejectsWrongCheckDigits() {
+        assertFalse(Ean.isValid("5901234123458"));
+        assertFalse(Ean.isValid("96385075"));
+    }
+
+    @Test
+    public void rejectsOtherLengthsAndCharacters() {
+        assertFalse(Ean.isValid(null));
+        assertFalse(Ean.isValid(""));
+        assertFalse(Ean.isValid("036000291452"));
+        assertFalse(Ean.isValid("59012341234A7"));
+        assertFalse(Ean.isValid("5901234123457 "));
+    }
+
+    @Test
+    public void normalizeDropsLeadingZeros() {
+        assertEquals("36000291452", Ean.normalize("036000291452"));
+        assertEquals("36000291452", Ean.normalize("0036000291452"));
+        assertEquals("5900001000017", Ean.normalize("5900001000017"));
+        assertEquals("0", Ean.normalize("0000"));
+        assertNull(Ean.normalize(null));
+    }
+}
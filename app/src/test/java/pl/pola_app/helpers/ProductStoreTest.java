@@ -0,0 +1,169 @@
+package pl.pola_app.helpers;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import pl.pola_app.model.Product;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ProductStoreTest {
+
+    @Test
+    public void newestFirst() {
+        ProductStore store = new ProductStore();
+        store.addFirst("a", Product.placeholder("a"));
+        store.addFirst("b", Product.placeholder("b"));
+        store.addLast("c", Product.placeholder("c"));
+
+        assertEquals(3, store.size());
+        assertEquals("b", store.codeAt(0));
+        assertEquals("a", store.codeAt(1));
+        assertEquals("c", store.codeAt(2));
+        assertEquals(2, store.indexOf("c"));
+        assertEquals(-1, store.indexOf("d"));
+    }
+
+    @Test
+    public void addLastKeepsExistingProduct() {
+        ProductStore store = new ProductStore();
+        Product first = Product.placeholder("a");
+        store.addFirst("a", first);
+
+        assertFalse(store.addLast("a", Product.placeholder("a")));
+        assertFalse(store.addLast(null, Product.placeholder(null)));
+        assertSame(first, store.get("a"));
+        assertEquals(1, store.size());
+    }
+
+    @Test
+    public void moveToFrontReportsOldPosition() {
+        ProductStore store = new ProductStore();
+        for (String code : new String[]{"a", "b", "c"}) {
+            store.addFirst(code, Product.placeholder(code));
+        }
+
+        assertEquals(2, store.moveToFront("a"));
+        assertEquals(0, store.moveToFront("a"));
+        assertEquals(-1, store.moveToFront("d"));
+        assertEquals("a", store.codeAt(0));
+        assertEquals("c", store.codeAt(1));
+        assertEquals("b", store.codeAt(2));
+    }
+
+    @Test
+    public void positionsOutOfRangeThrow() {
+        ProductStore store = new ProductStore();
+        store.addFirst("a", Product.placeholder("a"));
+        try {
+            store.get(1);
+            fail();
+        } catch (IndexOutOfBoundsException expected) {
+        }
+        try {
+            store.codeAt(-1);
+            fail();
+        } catch (IndexOutOfBoundsException expected) {
+        }
+    }
+
+    @Test
+    public void matchesListThroughCompactions() {
+        //enough operations on both ends to grow and compact the slots many times
+        ProductStore store = new ProductStore();
+        List<String> expected = new ArrayList<>();
+        Random random = new Random(7);
+        for (int i = 0; i < 20000; i++) {
+            String code = String.valueOf(random.nextInt(500));
+            int operation = random.nextInt(5);
+            if (operation == 0) {
+                store.addFirst(code, Product.placeholder(code));
+                expected.remove(code);
+                expected.add(0, code);
+            } else if (operation == 1) {
+                assertEquals(!expected.contains(code), store.addLast(code, Product.placeholder(code)));
+                if (!expected.contains(code)) {
+                    expected.add(code);
+                }
+            } else if (operation == 2) {
+                int position = expected.indexOf(code);
+                assertEquals(position, store.moveToFront(code));
+                if (position >= 0) {
+                    expected.add(0, expected.remove(position));
+                }
+            } else if (operation == 3) {
+                assertEquals(expected.indexOf(code), store.remove(code));
+                expected.remove(code);
+            } else {
+                assertEquals(expected.indexOf(code), store.indexOf(code));
+                assertEquals(expected.contains(code), store.contains(code));
+            }
+            if (i % 1000 == 0) {
+                assertSameOrder(expected, store);
+            }
+        }
+        assertSameOrder(expected, store);
+    }
+
+    @Test
+    public void benchmarkRescans() {
+        //rescanning products deep in a long history is what the Fenwick tree is for
+        for (int products : new int[]{10, 1000, 100000}) {
+            //fewer rescans of the longest history, the list needs over half a millisecond for each
+            benchmarkRescans(products, Math.min(50000, 200000000 / products));
+        }
+    }
+
+    private static void benchmarkRescans(int products, int rescans) {
+        ProductStore store = new ProductStore();
+        List<String> list = new ArrayList<>();
+        for (int i = 0; i < products; i++) {
+            String code = String.valueOf(i);
+            store.addFirst(code, Product.placeholder(code));
+            list.add(0, code);
+        }
+
+        Random random = new Random(1);
+        long start = System.nanoTime();
+        for (int i = 0; i < rescans; i++) {
+            String code = String.valueOf(random.nextInt(products));
+            store.moveToFront(code);
+            store.codeAt(random.nextInt(products));
+        }
+        long storeNanos = System.nanoTime() - start;
+
+        random = new Random(1);
+        start = System.nanoTime();
+        for (int i = 0; i < rescans; i++) {
+            String code = String.valueOf(random.nextInt(products));
+            list.add(0, list.remove(list.indexOf(code)));
+            list.get(random.nextInt(products));
+        }
+        long listNanos = System.nanoTime() - start;
+
+        System.out.println(rescans + " rescans of " + products + " products, store: " + storeNanos / 1000000
+                + " ms, list: " + listNanos / 1000000 + " ms");
+        //a list of a few products is faster, the store isn't expected to beat it there
+        if (products >= 1000) {
+            assertTrue(storeNanos < listNanos);
+        }
+    }
+
+    private static void assertSameOrder(List<String> expected, ProductStore store) {
+        assertEquals(expected.size(), store.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i), store.codeAt(i));
+            assertEquals(expected.get(i), store.get(i).code);
+            assertEquals(i, store.indexOf(expected.get(i)));
+        }
+        assertNull(store.get("missing"));
+    }
+}
@@ -0,0 +1,82 @@
+package pl.pola_app.helpers;
+
+import android.content.Context;
+import android.support.v7.widget.RecyclerView;
+import android.view.View;
+import android.view.ViewGroup;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * The layout manager isn't attached to a RecyclerView, the item count and child sizes are stubbed on a spy.
+ * MeasureSpecs are all UNSPECIFIED with the framework stubbed out, so the list asks for the height of every card.
+ */
+public class ProductsListLinearLayoutManagerTest {
+    private static final int CHILD_WIDTH = 1080;
+    private static final int CHILD_HEIGHT = 200;
+    private static final int PASSES = 100;
+
+    private ProductsListLinearLayoutManager layoutManager;
+    private RecyclerView.Recycler recycler;
+    private RecyclerView.State state;
+    private View child;
+
+    @Before
+    public void setUp() {
+        layoutManager = spy(new ProductsListLinearLayoutManager(mock(Context.class)));
+        doNothing().when(layoutManager).setMeasuredDimension(anyInt(), anyInt());
+        doReturn(CHILD_WIDTH).when(layoutManager).getDecoratedMeasuredWidth(any(View.class));
+        doReturn(CHILD_HEIGHT).when(layoutManager).getDecoratedMeasuredHeight(any(View.class));
+
+        child = mock(View.class);
+        when(child.getLayoutParams()).thenReturn(new RecyclerView.LayoutParams(
+                ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.WRAP_CONTENT));
+        recycler = mock(RecyclerView.Recycler.class);
+        when(recycler.getViewForPosition(anyInt())).thenReturn(child);
+        state = mock(RecyclerView.State.class);
+    }
+
+    @Test
+    public void measuresOneChildWhateverTheItemCount() {
+        for (int items : new int[]{1, 500, 5000}) {
+            setItemCount(items);
+            for (int i = 0; i < PASSES; i++) {
+                layoutManager.onMeasure(recycler, state, 0, 0);
+            }
+            verify(layoutManager, times(PASSES)).setMeasuredDimension(CHILD_WIDTH, items * CHILD_HEIGHT);
+        }
+
+        verify(recycler, times(1)).getViewForPosition(anyInt());
+        verify(child, times(1)).measure(anyInt(), anyInt());
+    }
+
+    @Test
+    public void measuresAgainOnlyWhenTheDataSetChanges() {
+        setItemCount(500);
+        layoutManager.onMeasure(recycler, state, 0, 0);
+        layoutManager.onItemsAdded(null, 0, 1);
+        layoutManager.onItemsRemoved(null, 0, 1);
+        layoutManager.onMeasure(recycler, state, 0, 0);
+        verify(child, times(1)).measure(anyInt(), anyInt());
+
+        layoutManager.onItemsChanged(null);
+        layoutManager.onMeasure(recycler, state, 0, 0);
+        verify(child, times(2)).measure(anyInt(), anyInt());
+    }
+
+    private void setItemCount(int items) {
+        doReturn(items).when(layoutManager).getItemCount();
+        when(state.getItemCount()).thenReturn(items);
+    }
+}
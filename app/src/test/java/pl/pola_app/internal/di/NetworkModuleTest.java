@@ -0,0 +1,202 @@
+package pl.pola_app.internal.di;
+
+import android.content.Context;
+
+import com.google.gson.Gson;
+import com.squareup.okhttp.ConnectionPool;
+import com.squareup.okhttp.MediaType;
+import com.squareup.okhttp.OkHttpClient;
+import com.squareup.okhttp.RequestBody;
+import com.squareup.okhttp.mockwebserver.MockResponse;
+import com.squareup.okhttp.mockwebserver.MockWebServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.TimeUnit;
+
+import javax.net.ServerSocketFactory;
+
+import pl.pola_app.metrics.ScanTimings;
+import pl.pola_app.network.Api;
+import pl.pola_app.network.ApiConnectionTracker;
+import pl.pola_app.network.CachingDns;
+import pl.pola_app.network.UploadApi;
+import retrofit.GsonConverterFactory;
+import retrofit.Retrofit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class NetworkModuleTest {
+    private static final int LOOKUPS = 50;
+    private static final int SCANS = 10000;
+    private static final String PRODUCT = "{\"code\": \"5900001000017\", \"name\": \"Product\"}";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private MockWebServer server;
+    private NetworkModule networkModule;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new MockWebServer();
+        server.setServerSocketFactory(new NoDelayServerSocketFactory());
+        server.start();
+        Context context = mock(Context.class);
+        when(context.getCacheDir()).thenReturn(folder.getRoot());
+        networkModule = new NetworkModule(context);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.shutdown();
+    }
+
+    @Test
+    public void lookupsShareOneConnection() throws Exception {
+        Api api = api(networkModule.provideOkHttpClient(new CachingDns(), new ApiConnectionTracker(server.url("/"))));
+
+        lookups(api);
+
+        assertEquals(LOOKUPS, server.getRequestCount());
+        for (int i = 0; i < LOOKUPS; i++) {
+            assertEquals(i, server.takeRequest().getSequenceNumber());
+        }
+    }
+
+    @Test
+    public void lookupsBenchmark() throws Exception {
+        OkHttpClient pooled = networkModule.provideOkHttpClient(new CachingDns(), new ApiConnectionTracker(server.url("/")));
+        OkHttpClient unpooled = networkModule.provideOkHttpClient(new CachingDns(), new ApiConnectionTracker(server.url("/")));
+        unpooled.setConnectionPool(new ConnectionPool(0, 1));
+        //warm up
+        lookups(api(pooled));
+        lookups(api(unpooled));
+
+        //the best of a few rounds, a single one is too noisy to compare
+        long pooledMillis = Long.MAX_VALUE;
+        long unpooledMillis = Long.MAX_VALUE;
+        for (int i = 0; i < 5; i++) {
+            pooledMillis = Math.min(pooledMillis, lookups(api(pooled)));
+            unpooledMillis = Math.min(unpooledMillis, lookups(api(unpooled)));
+        }
+
+        System.out.println(LOOKUPS + " lookups, pooled: " + pooledMillis + " ms, new connection each: "
+                + unpooledMillis + " ms");
+        assertTrue(pooledMillis < unpooledMillis);
+    }
+
+    @Test
+    public void apiAllocationBenchmark() throws Exception {
+        OkHttpClient client = networkModule.provideOkHttpClient(new CachingDns(), new ApiConnectionTracker(server.url("/")));
+        Retrofit retrofit = networkModule.provideRetrofit(client, server.url("/"), new Gson(), new ScanTimings());
+        Api api = networkModule.provideApi(retrofit);
+        //warm up, the proxy class and the call adapters are made once either way
+        for (int i = 0; i < SCANS; i++) {
+            retrofit.create(Api.class).getByCode("5900001000017", "device");
+            api.getByCode("5900001000017", "device");
+        }
+
+        long start = allocatedBytes();
+        for (int i = 0; i < SCANS; i++) {
+            retrofit.create(Api.class).getByCode("5900001000017", "device");
+        }
+        long proxyPerScanBytes = (allocatedBytes() - start) / SCANS;
+
+        start = allocatedBytes();
+        for (int i = 0; i < SCANS; i++) {
+            api.getByCode("5900001000017", "device");
+        }
+        long singletonBytes = (allocatedBytes() - start) / SCANS;
+
+        System.out.println("Allocated per scan, new Api proxy: " + proxyPerScanBytes + " bytes, singleton Api: "
+                + singletonBytes + " bytes");
+        assertTrue(singletonBytes < proxyPerScanBytes);
+    }
+
+    @Test
+    public void uploadsBypassTheHttpCache() throws Exception {
+        OkHttpClient client = networkModule.provideOkHttpClient(new CachingDns(), new ApiConnectionTracker(server.url("/")));
+        UploadApi uploadApi = networkModule.provideUploadApi(client, server.url("/"), new Gson());
+        server.enqueue(new MockResponse().setBody("{}"));
+
+        uploadApi.sendReportImage(server.url("/upload").toString(),
+                RequestBody.create(MediaType.parse("image/jpeg"), new byte[1024])).execute();
+
+        assertEquals("PUT", server.takeRequest().getMethod());
+        assertEquals(0, client.getCache().getRequestCount());
+
+        server.enqueue(new MockResponse().setBody(PRODUCT));
+        api(client).getByCode("5900001000017", "device").execute();
+        assertEquals(1, client.getCache().getRequestCount());
+    }
+
+    private static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+                .getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    private long lookups(Api api) throws IOException {
+        for (int i = 0; i < LOOKUPS; i++) {
+            server.enqueue(new MockResponse().setBody(PRODUCT));
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < LOOKUPS; i++) {
+            api.getByCode("5900001000017", "device").execute();
+        }
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    }
+
+    /**
+     * Without it headers and body flushed separately stall for a delayed ACK on every reused connection.
+     */
+    private static class NoDelayServerSocketFactory extends ServerSocketFactory {
+        @Override
+        public ServerSocket createServerSocket() throws IOException {
+            return new ServerSocket() {
+                @Override
+                public Socket accept() throws IOException {
+                    Socket socket = super.accept();
+                    socket.setTcpNoDelay(true);
+                    return socket;
+                }
+            };
+        }
+
+        @Override
+        public ServerSocket createServerSocket(int port) throws IOException {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public ServerSocket createServerSocket(int port, int backlog) throws IOException {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public ServerSocket createServerSocket(int port, int backlog, InetAddress address) throws IOException {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    private Api api(OkHttpClient client) {
+        return new Retrofit.Builder()
+                .baseUrl(server.url("/"))
+                .addConverterFactory(GsonConverterFactory.create())
+                .client(client)
+                .build()
+                .create(Api.class);
+    }
+}
@@ -0,0 +1,112 @@
+package pl.pola_app.metrics;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void emptyReportsZero() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getValueAtPercentile(50));
+    }
+
+    @Test
+    public void smallValuesAreExact() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 10; i++) {
+            histogram.record(i);
+        }
+        assertEquals(5, histogram.getValueAtPercentile(50));
+        assertEquals(10, histogram.getValueAtPercentile(100));
+        assertEquals(1, histogram.getValueAtPercentile(0));
+    }
+
+    @Test
+    public void everyValueFallsInsideItsBucket() {
+        for (long value = 0; value < 1 << 20; value += 1 + value / 64) {
+            int index = LatencyHistogram.indexOf(value);
+            assertTrue(value + " above its bucket", value <= LatencyHistogram.upperBoundOf(index));
+            if (index > 0) {
+                assertTrue(value + " below its bucket", value > LatencyHistogram.upperBoundOf(index - 1));
+            }
+        }
+    }
+
+    @Test
+    public void percentilesStayWithinBucketError() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        Random random = new Random(42);
+        long[] values = new long[100000];
+        for (int i = 0; i < values.length; i++) {
+            //log-normal-ish spread from microseconds to seconds
+            values[i] = (long) Math.exp(random.nextDouble() * 14);
+            histogram.recordNanos(values[i] * 1000);
+        }
+        Arrays.sort(values);
+        for (double percentile : new double[]{50, 90, 95, 99, 99.9}) {
+            long exact = values[(int) Math.ceil(percentile / 100 * values.length) - 1];
+            long reported = histogram.getValueAtPercentile(percentile);
+            assertTrue(percentile + ": " + reported + " vs " + exact, reported >= exact);
+            assertTrue(percentile + ": " + reported + " vs " + exact,
+                    reported <= exact + exact / LatencyHistogram.SUB_BUCKETS + 1);
+        }
+    }
+
+    @Test
+    public void totalIsExact() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(1000);
+        histogram.record(1001);
+        histogram.recordNanos(2500);
+        assertEquals(2003, histogram.getTotalMicros());
+    }
+
+    @Test
+    public void outOfRangeValuesAreClamped() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(-5);
+        histogram.record(Long.MAX_VALUE);
+        assertEquals(2, histogram.getCount());
+        assertEquals(0, histogram.getValueAtPercentile(50));
+        assertTrue(histogram.getValueAtPercentile(100) > 0);
+    }
+
+    @Test
+    public void concurrentRecordsAreAllCounted() throws InterruptedException {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        final int threads = 4;
+        final int perThread = 50000;
+        final CountDownLatch done = new CountDownLatch(threads);
+        for (int t = 0; t < threads; t++) {
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < perThread; i++) {
+                        histogram.record(i % 1000);
+                    }
+                    done.countDown();
+                }
+            }).start();
+        }
+        done.await();
+        assertEquals(threads * perThread, histogram.getCount());
+    }
+
+    @Test
+    public void resetForgetsEverything() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(100);
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getTotalMicros());
+        assertEquals(0, histogram.getValueAtPercentile(99));
+    }
+}
@@ -0,0 +1,234 @@
+package pl.pola_app.network;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import com.squareup.okhttp.HttpUrl;
+import com.squareup.okhttp.mockwebserver.Dispatcher;
+import com.squareup.okhttp.mockwebserver.MockResponse;
+import com.squareup.okhttp.mockwebserver.MockWebServer;
+import com.squareup.okhttp.mockwebserver.RecordedRequest;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import pl.pola_app.InMemorySharedPreferences;
+import pl.pola_app.model.SearchResult;
+import retrofit.Callback;
+import retrofit.GsonConverterFactory;
+import retrofit.Response;
+import retrofit.Retrofit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * The batcher and its callbacks run on a single executor standing in for the main thread.
+ */
+public class BarcodeBatcherTest {
+    //the first code goes out alone, the next MAX_BATCH_SIZE fill a batch that is sent right away
+    private static final int CODES = BarcodeBatcher.MAX_BATCH_SIZE + 1;
+
+    private final ExecutorService mainThread = Executors.newSingleThreadExecutor();
+    private final InMemorySharedPreferences preferences = new InMemorySharedPreferences();
+    private final Map<String, String> delivered = new ConcurrentHashMap<>();
+    private final AtomicInteger batchRequests = new AtomicInteger();
+    private MockWebServer server;
+    private Retrofit retrofit;
+    private BatchAnswer batchAnswer;
+
+    private interface BatchAnswer {
+        MockResponse answer(List<String> codes);
+    }
+
+    @Before
+    public void setUp() throws IOException {
+        server = new MockWebServer();
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                if (request.getPath().startsWith("/a/v2/get_by_codes")) {
+                    batchRequests.incrementAndGet();
+                    List<String> codes = new Gson().fromJson(request.getBody().readUtf8(),
+                            new TypeToken<List<String>>() {}.getType());
+                    return batchAnswer.answer(codes);
+                }
+                String code = HttpUrl.parse("http://localhost" + request.getPath()).queryParameter("code");
+                return new MockResponse().setBody(new Gson().toJson(product(code, code)));
+            }
+        });
+        server.start();
+        retrofit = new Retrofit.Builder()
+                .baseUrl(server.url("/"))
+                .addConverterFactory(GsonConverterFactory.create())
+                .callbackExecutor(mainThread)
+                .build();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        mainThread.shutdownNow();
+        server.shutdown();
+    }
+
+    @Test
+    public void batchAnswersWithNormalizedCodesReachTheirCallbacks() throws Exception {
+        batchAnswer = new BatchAnswer() {
+            @Override
+            public MockResponse answer(List<String> codes) {
+                List<SearchResult> results = new ArrayList<>();
+                //shuffled, without leading zeros and one short
+                for (String code : codes.subList(1, codes.size())) {
+                    results.add(product(code.replaceFirst("^0+", ""), code));
+                }
+                Collections.reverse(results);
+                return new MockResponse().setBody(new Gson().toJson(results));
+            }
+        };
+
+        List<String> codes = lookUp(newBatcher());
+
+        assertEquals(1, batchRequests.get());
+        //the single request and the one the batch didn't answer
+        assertEquals(2, server.getRequestCount() - batchRequests.get());
+        for (String code : codes) {
+            assertEquals(code, delivered.get(code));
+        }
+    }
+
+    @Test
+    public void batchAnswersWithUnknownCodesAreMatchedByPosition() throws Exception {
+        batchAnswer = new BatchAnswer() {
+            @Override
+            public MockResponse answer(List<String> codes) {
+                List<SearchResult> results = new ArrayList<>();
+                for (String code : codes) {
+                    results.add(product("internal-" + code, code));
+                }
+                return new MockResponse().setBody(new Gson().toJson(results));
+            }
+        };
+
+        List<String> codes = lookUp(newBatcher());
+
+        assertEquals(1, server.getRequestCount() - batchRequests.get());
+        for (String code : codes) {
+            assertEquals(code, delivered.get(code));
+        }
+    }
+
+    @Test
+    public void unsupportedBatchesAreNotRetriedAfterRestart() throws Exception {
+        batchAnswer = new BatchAnswer() {
+            @Override
+            public MockResponse answer(List<String> codes) {
+                return new MockResponse().setResponseCode(404);
+            }
+        };
+
+        List<String> codes = lookUp(newBatcher());
+        for (String code : codes) {
+            assertEquals(code, delivered.get(code));
+        }
+        long retryAt = preferences.getLong(BarcodeBatcher.PREF_BATCH_RETRY_AT, 0);
+        assertTrue(retryAt > System.currentTimeMillis() + BarcodeBatcher.BATCH_RETRY_MILLIS / 2);
+
+        delivered.clear();
+        lookUp(newBatcher());
+        assertEquals(1, batchRequests.get());
+        assertEquals(CODES, delivered.size());
+
+        preferences.edit().putLong(BarcodeBatcher.PREF_BATCH_RETRY_AT, System.currentTimeMillis() - 1).apply();
+        lookUp(newBatcher());
+        assertEquals(2, batchRequests.get());
+    }
+
+    @Test
+    public void anyClientErrorMeansBatchesAreUnsupported() throws Exception {
+        batchAnswer = new BatchAnswer() {
+            @Override
+            public MockResponse answer(List<String> codes) {
+                return new MockResponse().setResponseCode(400);
+            }
+        };
+
+        List<String> codes = lookUp(newBatcher());
+
+        for (String code : codes) {
+            assertEquals(code, delivered.get(code));
+        }
+        assertTrue(preferences.getLong(BarcodeBatcher.PREF_BATCH_RETRY_AT, 0) > System.currentTimeMillis());
+    }
+
+    @Test
+    public void failedBatchesFallBackToSingleRequests() throws Exception {
+        batchAnswer = new BatchAnswer() {
+            @Override
+            public MockResponse answer(List<String> codes) {
+                return new MockResponse().setBody("<html><body>Not here</body></html>");
+            }
+        };
+
+        List<String> codes = lookUp(newBatcher());
+
+        assertEquals(1, batchRequests.get());
+        assertEquals(CODES, server.getRequestCount() - batchRequests.get());
+        for (String code : codes) {
+            assertEquals(code, delivered.get(code));
+        }
+        //a failure isn't an answer from the server, batches are tried again next time
+        assertEquals(0, preferences.getLong(BarcodeBatcher.PREF_BATCH_RETRY_AT, 0));
+    }
+
+    private BarcodeBatcher newBatcher() {
+        return new BarcodeBatcher(retrofit.create(Api.class), retrofit, preferences);
+    }
+
+    private List<String> lookUp(final BarcodeBatcher barcodeBatcher) throws Exception {
+        final List<String> codes = new ArrayList<>();
+        for (int i = 0; i < CODES; i++) {
+            codes.add(String.format("%013d", 36000291450L + i * 10));
+        }
+        final CountDownLatch answered = new CountDownLatch(CODES);
+        mainThread.submit(new Runnable() {
+            @Override
+            public void run() {
+                for (final String code : codes) {
+                    barcodeBatcher.enqueue(code, "device", new Callback<SearchResult>() {
+                        @Override
+                        public void onResponse(Response<SearchResult> response, Retrofit retrofit) {
+                            delivered.put(code, response.body().name);
+                            answered.countDown();
+                        }
+
+                        @Override
+                        public void onFailure(Throwable t) {
+                            throw new AssertionError(t);
+                        }
+                    });
+                }
+            }
+        }).get();
+        assertTrue(answered.await(10, TimeUnit.SECONDS));
+        return codes;
+    }
+
+    private static SearchResult product(String code, String name) {
+        SearchResult searchResult = new SearchResult();
+        searchResult.code = code;
+        searchResult.name = name;
+        return searchResult;
+    }
+}
@@ -0,0 +1,167 @@
+package pl.pola_app.network;
+
+import com.squareup.okhttp.mockwebserver.MockResponse;
+import com.squareup.okhttp.mockwebserver.MockWebServer;
+import com.squareup.okhttp.mockwebserver.RecordedRequest;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import pl.pola_app.InMemorySharedPreferences;
+import pl.pola_app.model.SearchResult;
+import pl.pola_app.storage.ProductCache;
+import pl.pola_app.storage.ProductSnapshot;
+import pl.pola_app.storage.ProductRecordCodec;
+import retrofit.Callback;
+import retrofit.GsonConverterFactory;
+import retrofit.Response;
+import retrofit.Retrofit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class BarcodeLookupTest {
+    private static final String CODE = "5900001000017";
+    private static final String MAIN_THREAD = "main";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private MockWebServer server;
+    private File snapshotFile;
+    private ProductSnapshot snapshot;
+    private final BlockingQueue<SearchResult> cached = new LinkedBlockingQueue<>();
+    private final BlockingQueue<SearchResult> delivered = new LinkedBlockingQueue<>();
+    private BarcodeLookup barcodeLookup;
+    private final ExecutorService mainThread = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable r) {
+            return new Thread(r, MAIN_THREAD);
+        }
+    });
+
+    @Before
+    public void setUp() throws IOException {
+        server = new MockWebServer();
+        server.start();
+        Retrofit retrofit = new Retrofit.Builder()
+                .baseUrl(server.url("/"))
+                .addConverterFactory(GsonConverterFactory.create())
+                .callbackExecutor(mainThread)
+                .build();
+        snapshotFile = new File(folder.getRoot(), "products.snapshot");
+        snapshot = new ProductSnapshot(snapshotFile);
+        ProductCache productCache = new ProductCache(null, null) {
+            @Override
+            public Entry get(String code) {
+                return null;
+            }
+
+            @Override
+            public void put(SearchResult searchResult) {
+                cached.add(searchResult);
+            }
+        };
+        BarcodeBatcher barcodeBatcher = new BarcodeBatcher(retrofit.create(Api.class), retrofit,
+                new InMemorySharedPreferences());
+        barcodeLookup = new BarcodeLookup(barcodeBatcher, retrofit, productCache, snapshot);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        mainThread.shutdownNow();
+        server.shutdown();
+    }
+
+    @Test
+    public void freshSnapshotHitIsServedWithoutRequest() throws Exception {
+        storeInSnapshot("Offline name");
+
+        lookup();
+
+        assertEquals("Offline name", delivered.poll(5, TimeUnit.SECONDS).name);
+        assertNull(cached.poll(100, TimeUnit.MILLISECONDS));
+        assertEquals(0, server.getRequestCount());
+    }
+
+    @Test
+    public void staleSnapshotHitIsServedAndRevalidated() throws Exception {
+        storeInSnapshot("Offline name");
+        assertTrue(snapshotFile.setLastModified(System.currentTimeMillis() - ProductCache.TTL_MILLIS - 60000));
+        server.enqueue(new MockResponse().setBody("{\"code\": \"" + CODE + "\", \"name\": \"Current name\"}"));
+
+        lookup();
+
+        assertEquals("Offline name", delivered.poll(5, TimeUnit.SECONDS).name);
+        RecordedRequest request = server.takeRequest(5, TimeUnit.SECONDS);
+        assertNotNull(request);
+        assertEquals("/a/v2/get_by_code?code=" + CODE + "&device_id=device", request.getPath());
+        assertEquals("Current name", cached.poll(5, TimeUnit.SECONDS).name);
+        //the revalidation doesn't answer the lookup a second time
+        assertNull(delivered.poll(100, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void unknownCodeIsFetched() throws Exception {
+        server.enqueue(new MockResponse().setBody("{\"code\": \"" + CODE + "\", \"name\": \"Current name\"}"));
+
+        lookup();
+
+        assertEquals("Current name", delivered.poll(5, TimeUnit.SECONDS).name);
+        assertEquals("Current name", cached.poll(5, TimeUnit.SECONDS).name);
+        assertEquals(1, server.getRequestCount());
+    }
+
+    private void storeInSnapshot(String name) throws IOException {
+        SortedMap<Long, byte[]> records = new TreeMap<>();
+        records.put(ProductSnapshot.keyOf(CODE), ProductRecordCodec.encode(product(name)));
+        snapshot.applyDelta(1, records);
+    }
+
+    private void lookup() throws Exception {
+        mainThread.submit(new Runnable() {
+            @Override
+            public void run() {
+                barcodeLookup.lookup(CODE, "device", collect());
+            }
+        }).get();
+    }
+
+    private Callback<SearchResult> collect() {
+        return new Callback<SearchResult>() {
+            @Override
+            public void onResponse(Response<SearchResult> response, Retrofit retrofit) {
+                assertEquals(MAIN_THREAD, Thread.currentThread().getName());
+                delivered.add(response.body());
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                throw new AssertionError(t);
+            }
+        };
+    }
+
+    private static SearchResult product(String name) {
+        SearchResult searchResult = new SearchResult();
+        searchResult.code = CODE;
+        searchResult.name = name;
+        return searchResult;
+    }
+}
@@ -0,0 +1,178 @@
+package pl.pola_app.network;
+
+import com.squareup.okhttp.HttpUrl;
+import com.squareup.okhttp.OkHttpClient;
+import com.squareup.okhttp.Request;
+import com.squareup.okhttp.internal.HeldCertificate;
+import com.squareup.okhttp.internal.SslContextBuilder;
+import com.squareup.okhttp.mockwebserver.MockResponse;
+import com.squareup.okhttp.mockwebserver.MockWebServer;
+import com.squareup.okhttp.mockwebserver.RecordedRequest;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.util.concurrent.TimeUnit;
+
+import javax.net.ssl.SSLContext;
+
+import pl.pola_app.metrics.ScanTimings;
+import retrofit.GsonConverterFactory;
+import retrofit.Retrofit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ConnectionWarmerTest {
+    private MockWebServer server;
+    private OkHttpClient client;
+    private ApiConnectionTracker connectionTracker;
+    private ScanTimings scanTimings;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new MockWebServer();
+        server.start();
+        connectionTracker = new ApiConnectionTracker(server.url("/"));
+        client = new OkHttpClient();
+        client.networkInterceptors().add(connectionTracker);
+        scanTimings = new ScanTimings();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.shutdown();
+    }
+
+    @Test
+    public void opensConnectionAndRecordsTheTimeItSaves() throws Exception {
+        server.enqueue(new MockResponse());
+
+        newWarmer().warmUp();
+
+        RecordedRequest request = server.takeRequest(5, TimeUnit.SECONDS);
+        assertNotNull(request);
+        assertEquals("HEAD", request.getMethod());
+        //recorded right after the response, give the executor a moment
+        String warmedUpOnce = "(?s).*warm_up: [^\\n]*\\(1\\).*";
+        String report = scanTimings.report();
+        for (int i = 0; i < 100 && !report.matches(warmedUpOnce); i++) {
+            Thread.sleep(10);
+            report = scanTimings.report();
+        }
+        assertTrue(report, report.matches(warmedUpOnce));
+    }
+
+    @Test
+    public void skipsWhenApiConnectionWasJustUsed() throws Exception {
+        server.enqueue(new MockResponse().setBody("{\"code\": \"5900001000017\"}"));
+        new Retrofit.Builder()
+                .baseUrl(server.url("/"))
+                .addConverterFactory(GsonConverterFactory.create())
+                .client(client)
+                .build()
+                .create(Api.class)
+                .getByCode("5900001000017", "device")
+                .execute();
+        server.takeRequest();
+
+        newWarmer().warmUp();
+
+        assertNull(server.takeRequest(200, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void connectionsToOtherHostsDontCount() throws Exception {
+        MockWebServer otherHost = new MockWebServer();
+        otherHost.enqueue(new MockResponse());
+        otherHost.start();
+        try {
+            //same machine, but reached under another name
+            HttpUrl url = otherHost.url("/").newBuilder().host("127.0.0.1").build();
+            assertNotEquals(server.url("/").host(), url.host());
+            client.newCall(new Request.Builder().url(url).build()).execute().body().close();
+        } finally {
+            otherHost.shutdown();
+        }
+        server.enqueue(new MockResponse());
+
+        newWarmer().warmUp();
+
+        assertNotNull(server.takeRequest(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void benchmarkFirstLookupOverHttps() throws Exception {
+        SSLContext sslContext = sslContext();
+        server.useHttps(sslContext.getSocketFactory(), false);
+        //once without measuring, so class loading and the JIT don't count against the cold lookup
+        firstLookup(httpsClient(sslContext), false);
+        server.takeRequest();
+
+        long coldNanos = firstLookup(httpsClient(sslContext), false);
+        assertEquals(0, server.takeRequest().getSequenceNumber());
+        long warmNanos = firstLookup(httpsClient(sslContext), true);
+        server.takeRequest();
+        //the lookup went over the connection the warm up opened
+        assertEquals(1, server.takeRequest().getSequenceNumber());
+
+        System.out.println("First lookup over https, cold: " + coldNanos / 1000 + " us, after warm up: "
+                + warmNanos / 1000 + " us");
+        assertTrue(warmNanos < coldNanos);
+    }
+
+    private SSLContext sslContext() throws GeneralSecurityException {
+        HeldCertificate ca = new HeldCertificate.Builder()
+                .serialNumber("1")
+                .ca(1)
+                .build();
+        HeldCertificate serverCertificate = new HeldCertificate.Builder()
+                .serialNumber("2")
+                .commonName(server.getHostName())
+                .issuedBy(ca)
+                .build();
+        return new SslContextBuilder()
+                .certificateChain(serverCertificate, ca)
+                .addTrustedCertificate(ca.certificate)
+                .build();
+    }
+
+    private OkHttpClient httpsClient(SSLContext sslContext) {
+        connectionTracker = new ApiConnectionTracker(server.url("/"));
+        client = new OkHttpClient();
+        client.setSslSocketFactory(sslContext.getSocketFactory());
+        client.networkInterceptors().add(connectionTracker);
+        return client;
+    }
+
+    private long firstLookup(OkHttpClient client, boolean warmUp) throws Exception {
+        Api api = new Retrofit.Builder()
+                .baseUrl(server.url("/"))
+                .addConverterFactory(GsonConverterFactory.create())
+                .client(client)
+                .build()
+                .create(Api.class);
+        if (warmUp) {
+            server.enqueue(new MockResponse());
+            newWarmer().warmUp();
+            for (int i = 0; i < 500 && scanTimings.getCount(ScanTimings.Stage.WARM_UP) == 0; i++) {
+                Thread.sleep(10);
+            }
+            assertEquals(1, scanTimings.getCount(ScanTimings.Stage.WARM_UP));
+        }
+        server.enqueue(new MockResponse().setBody("{\"code\": \"5900001000017\"}"));
+        long start = System.nanoTime();
+        api.getByCode("5900001000017", "device").execute();
+        return System.nanoTime() - start;
+    }
+
+    private ConnectionWarmer newWarmer() {
+        return new ConnectionWarmer(client, new CachingDns(), server.url("/"), connectionTracker, scanTimings);
+    }
+}
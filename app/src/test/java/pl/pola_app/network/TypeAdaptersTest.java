@@ -0,0 +1,73 @@
+package pl.pola_app.network;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+import org.junit.Test;
+
+import pl.pola_app.model.ReportResult;
+import pl.pola_app.model.SearchResult;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * The streaming adapters have to read everything the reflective ones did.
+ */
+public class TypeAdaptersTest {
+    private static final String SEARCH_RESULT = "{\"product_id\": 3421, \"code\": \"5900001000017\","
+            + " \"name\": \"Przedsiębiorstwo \\\"Pola\\\" Sp. z o.o.\", \"card_type\": \"type_white\","
+            + " \"plScore\": 85, \"altText\": null, \"plCapital\": 100, \"plWorkers\": 100, \"plRnD\": 100,"
+            + " \"plRegistered\": 100, \"plNotGlobEnt\": 100, \"description\": \"Firma ma w Polsce\\nsiedzibę\","
+            + " \"report_text\": \"Zgłoś jeśli posiadasz bardziej aktualne dane na temat tego produktu\","
+            + " \"report_button_text\": \"Zgłoś\", \"report_button_type\": \"type_white\"}";
+
+    private final Gson reflective = new Gson();
+    private final Gson streaming = new GsonBuilder()
+            .registerTypeAdapter(SearchResult.class, new SearchResultTypeAdapter())
+            .registerTypeAdapter(ReportResult.class, new ReportResultTypeAdapter())
+            .create();
+
+    @Test
+    public void searchResultReadsLikeReflection() {
+        assertSameSearchResult(SEARCH_RESULT);
+        assertSameSearchResult("{}");
+        assertSameSearchResult("{\"code\": 5900001000017, \"name\": true, \"plScore\": \"40\", \"plRnD\": 20.0}");
+        assertSameSearchResult("{\"product_id\": null, \"plCapital\": null, \"name\": null}");
+        assertSameSearchResult("{\"unknown\": {\"nested\": [1, {\"a\": null}]}, \"code\": \"1\", \"extra\": [true]}");
+        assertNull(streaming.fromJson("null", SearchResult.class));
+    }
+
+    @Test
+    public void searchResultSurvivesRoundTrip() {
+        SearchResult searchResult = streaming.fromJson(SEARCH_RESULT, SearchResult.class);
+        String written = streaming.toJson(searchResult);
+        assertEquals(reflective.toJson(searchResult), written);
+        assertSameSearchResult(written);
+    }
+
+    @Test
+    public void reportResultReadsLikeReflection() {
+        assertSameReportResult("{\"id\": 17, \"signed_requests\": [[\"https://s3/a\", \"sig\"], [\"https://s3/b\"]]}");
+        assertSameReportResult("{\"id\": \"17\", \"signed_requests\": []}");
+        assertSameReportResult("{\"signed_requests\": null, \"other\": 1}");
+        assertSameReportResult("{\"signed_requests\": [null, [null, \"x\"]]}");
+    }
+
+    @Test
+    public void reportResultSurvivesRoundTrip() {
+        ReportResult reportResult = streaming.fromJson(
+                "{\"id\": 17, \"signed_requests\": [[\"https://s3/a\", \"sig\"]]}", ReportResult.class);
+        assertEquals(reflective.toJson(reportResult), streaming.toJson(reportResult));
+    }
+
+    private void assertSameSearchResult(String json) {
+        assertEquals(json, reflective.toJson(reflective.fromJson(json, SearchResult.class)),
+                reflective.toJson(streaming.fromJson(json, SearchResult.class)));
+    }
+
+    private void assertSameReportResult(String json) {
+        assertEquals(json, reflective.toJson(reflective.fromJson(json, ReportResult.class)),
+                reflective.toJson(streaming.fromJson(json, ReportResult.class)));
+    }
+}
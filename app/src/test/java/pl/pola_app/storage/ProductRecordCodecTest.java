@@ -0,0 +1,72 @@
+package pl.pola_app.storage;
+
+import com.google.gson.Gson;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import pl.pola_app.model.SearchResult;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class ProductRecordCodecTest {
+    private final Gson gson = new Gson();
+
+    @Test
+    public void keepsEveryField() throws IOException {
+        SearchResult searchResult = new SearchResult();
+        searchResult.product_id = 3421;
+        searchResult.code = "5900001000017";
+        searchResult.name = "Zakłady Mięsne „Łódź”";
+        searchResult.card_type = "type_grey";
+        searchResult.plScore = 0;
+        searchResult.altText = "Brak danych";
+        searchResult.plCapital = -1;
+        searchResult.plWorkers = 100;
+        searchResult.plRnD = 50;
+        searchResult.plRegistered = Integer.MAX_VALUE;
+        searchResult.plNotGlobEnt = Integer.MIN_VALUE;
+        searchResult.description = "";
+        searchResult.report_text = "Zgłoś\n\u0000błąd";
+        searchResult.report_button_text = "Zgłoś";
+        searchResult.report_button_type = "type_red";
+
+        assertSameFields(searchResult, ProductRecordCodec.decode(ProductRecordCodec.encode(searchResult)));
+    }
+
+    @Test
+    public void keepsMissingFieldsMissing() throws IOException {
+        SearchResult empty = new SearchResult();
+        byte[] record = ProductRecordCodec.encode(empty);
+        assertEquals(4, record.length);
+        assertSameFields(empty, ProductRecordCodec.decode(record));
+
+        SearchResult sparse = new SearchResult();
+        sparse.code = "12345670";
+        sparse.plWorkers = 0;
+        sparse.report_button_type = "type_white";
+        assertSameFields(sparse, ProductRecordCodec.decode(ProductRecordCodec.encode(sparse)));
+    }
+
+    @Test
+    public void truncatedRecordThrows() {
+        SearchResult searchResult = new SearchResult();
+        searchResult.code = "5900001000017";
+        searchResult.name = "Product";
+        byte[] record = ProductRecordCodec.encode(searchResult);
+        for (int length = 0; length < record.length; length++) {
+            try {
+                ProductRecordCodec.decode(Arrays.copyOf(record, length));
+                fail("Decoded " + length + " of " + record.length + " bytes");
+            } catch (IOException expected) {
+            }
+        }
+    }
+
+    private void assertSameFields(SearchResult expected, SearchResult actual) {
+        assertEquals(gson.toJson(expected), gson.toJson(actual));
+    }
+}
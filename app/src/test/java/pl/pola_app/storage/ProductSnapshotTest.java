@@ -0,0 +1,117 @@
+package pl.pola_app.storage;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import pl.pola_app.model.SearchResult;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+public class ProductSnapshotTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File file;
+    private ProductSnapshot snapshot;
+
+    @Before
+    public void setUp() {
+        file = new File(folder.getRoot(), "products.snapshot");
+        snapshot = new ProductSnapshot(file);
+    }
+
+    @Test
+    public void keyOfRejectsCodesThatCantBeStored() {
+        assertEquals(-1, ProductSnapshot.keyOf(null));
+        assertEquals(-1, ProductSnapshot.keyOf(""));
+        assertEquals(-1, ProductSnapshot.keyOf("59000010A0017"));
+        assertEquals(-1, ProductSnapshot.keyOf("123456789012345678"));
+    }
+
+    @Test
+    public void keyOfKeepsZeroPaddedCodesApart() {
+        assertNotEquals(ProductSnapshot.keyOf("12345670"), ProductSnapshot.keyOf("0000012345670"));
+    }
+
+    @Test
+    public void emptyWithoutFile() {
+        assertEquals(0, snapshot.getVersion());
+        assertNull(snapshot.find("5900001000017"));
+    }
+
+    @Test
+    public void appliesDeltas() throws IOException {
+        SortedMap<Long, byte[]> changes = new TreeMap<>();
+        for (int i = 0; i < 3000; i++) {
+            put(changes, code(i), "Product " + i);
+        }
+        snapshot.applyDelta(1, changes);
+
+        changes.clear();
+        changes.put(ProductSnapshot.keyOf(code(0)), null);
+        changes.put(ProductSnapshot.keyOf(code(1500)), null);
+        put(changes, code(2999), "Renamed");
+        put(changes, code(5000), "Added");
+        snapshot.applyDelta(2, changes);
+
+        ProductSnapshot reopened = new ProductSnapshot(file);
+        assertEquals(2, reopened.getVersion());
+        assertNull(reopened.find(code(0)));
+        assertNull(reopened.find(code(1500)));
+        assertEquals("Product 1", reopened.find(code(1)).name);
+        assertEquals("Product 2998", reopened.find(code(2998)).name);
+        assertEquals("Renamed", reopened.find(code(2999)).name);
+        assertEquals("Added", reopened.find(code(5000)).name);
+        assertNull(reopened.find(code(4000)));
+    }
+
+    @Test
+    public void brokenDownloadKeepsCurrentSnapshot() throws IOException {
+        SortedMap<Long, byte[]> changes = new TreeMap<>();
+        put(changes, code(1), "Product 1");
+        snapshot.applyDelta(7, changes);
+
+        try {
+            snapshot.replace(new ByteArrayInputStream(new byte[]{'P', 'O', 'L', 'A', 0, 0, 0, 1}));
+            fail();
+        } catch (IOException expected) {
+        }
+
+        assertEquals(7, snapshot.getVersion());
+        assertEquals("Product 1", snapshot.find(code(1)).name);
+    }
+
+    @Test
+    public void dropsUnreadableFile() throws IOException {
+        FileOutputStream out = new FileOutputStream(file);
+        out.write(new byte[64]);
+        out.close();
+
+        assertEquals(0, snapshot.getVersion());
+        assertFalse(file.exists());
+    }
+
+    private static String code(int i) {
+        return String.valueOf(5900000000000L + i * 10L);
+    }
+
+    private static void put(SortedMap<Long, byte[]> changes, String code, String name) {
+        SearchResult searchResult = new SearchResult();
+        searchResult.code = code;
+        searchResult.name = name;
+        changes.put(ProductSnapshot.keyOf(code), ProductRecordCodec.encode(searchResult));
+    }
+}
@@ -0,0 +1,150 @@
+package pl.pola_app.storage;
+
+import com.squareup.okhttp.mockwebserver.MockResponse;
+import com.squareup.okhttp.mockwebserver.MockWebServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import okio.Buffer;
+import okio.Okio;
+import pl.pola_app.model.SearchResult;
+import pl.pola_app.network.Api;
+import retrofit.GsonConverterFactory;
+import retrofit.Retrofit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class SnapshotSyncTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private MockWebServer server;
+    private File snapshotFile;
+    private ProductSnapshot snapshot;
+    private SnapshotSync sync;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new MockWebServer();
+        server.start();
+        snapshotFile = new File(folder.getRoot(), "products.snapshot");
+        snapshot = new ProductSnapshot(snapshotFile);
+        sync = new SnapshotSync(api(server), snapshot);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.shutdown();
+    }
+
+    @Test
+    public void downloadsFullSnapshotThenPullsDelta() throws Exception {
+        server.enqueue(new MockResponse().setBody(snapshotBytes(3, product("5900001000017", "Old name"))));
+
+        sync.syncIfDue();
+
+        assertEquals("/a/v2/snapshot", server.takeRequest().getPath());
+        assertEquals(3, snapshot.getVersion());
+        assertEquals("Old name", snapshot.find("5900001000017").name);
+
+        makeSyncDue();
+        server.enqueue(new MockResponse().setBody("{\"version\": 4, \"products\": ["
+                + "{\"code\": \"5900002000014\", \"name\": \"New product\", \"plScore\": 80}],"
+                + "\"removed\": [\"5900001000017\"]}"));
+
+        sync.syncIfDue();
+
+        assertEquals("/a/v2/snapshot_delta?since=3", server.takeRequest().getPath());
+        assertEquals(4, snapshot.getVersion());
+        assertNull(snapshot.find("5900001000017"));
+        SearchResult added = snapshot.find("5900002000014");
+        assertNotNull(added);
+        assertEquals(Integer.valueOf(80), added.plScore);
+    }
+
+    @Test
+    public void fullDownloadRequestedByDelta() throws Exception {
+        server.enqueue(new MockResponse().setBody(snapshotBytes(3, product("5900001000017", "Old name"))));
+        sync.syncIfDue();
+        server.takeRequest();
+
+        makeSyncDue();
+        server.enqueue(new MockResponse().setBody("{\"version\": 9, \"full_required\": true}"));
+        server.enqueue(new MockResponse().setBody(snapshotBytes(9, product("5900002000014", "New product"))));
+
+        sync.syncIfDue();
+
+        assertEquals("/a/v2/snapshot_delta?since=3", server.takeRequest().getPath());
+        assertEquals("/a/v2/snapshot", server.takeRequest().getPath());
+        assertEquals(9, snapshot.getVersion());
+        assertNull(snapshot.find("5900001000017"));
+    }
+
+    @Test
+    public void failedDownloadIsNotRetriedUntilTheSyncInterval() throws Exception {
+        server.enqueue(new MockResponse().setResponseCode(404));
+
+        sync.syncIfDue();
+        sync.syncIfDue();
+        //another process start
+        new SnapshotSync(api(server), new ProductSnapshot(snapshotFile)).syncIfDue();
+
+        assertEquals(1, server.getRequestCount());
+        assertEquals(0, snapshot.getVersion());
+
+        makeSyncDue();
+        server.enqueue(new MockResponse().setResponseCode(404));
+        sync.syncIfDue();
+
+        assertEquals(2, server.getRequestCount());
+    }
+
+    private static Api api(MockWebServer server) {
+        return new Retrofit.Builder()
+                .baseUrl(server.url("/"))
+                .addConverterFactory(GsonConverterFactory.create())
+                .build()
+                .create(Api.class);
+    }
+
+    private void makeSyncDue() {
+        long past = System.currentTimeMillis() - SnapshotSync.SYNC_INTERVAL_MILLIS - 1000;
+        File attemptFile = new File(snapshotFile.getPath() + ".attempt");
+        if (attemptFile.exists()) {
+            assertEquals(true, attemptFile.setLastModified(past));
+        }
+        if (snapshotFile.exists()) {
+            assertEquals(true, snapshotFile.setLastModified(past));
+        }
+    }
+
+    private Buffer snapshotBytes(long version, SearchResult... products) throws IOException {
+        SortedMap<Long, byte[]> records = new TreeMap<>();
+        for (SearchResult product : products) {
+            records.put(ProductSnapshot.keyOf(product.code), ProductRecordCodec.encode(product));
+        }
+        File file = folder.newFile();
+        new ProductSnapshot(file).applyDelta(version, records);
+        Buffer buffer = new Buffer();
+        buffer.writeAll(Okio.source(file));
+        return buffer;
+    }
+
+    private static SearchResult product(String code, String name) {
+        SearchResult searchResult = new SearchResult();
+        searchResult.code = code;
+        searchResult.name = name;
+        return searchResult;
+    }
+}
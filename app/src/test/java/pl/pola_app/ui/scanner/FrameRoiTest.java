@@ -0,0 +1,44 @@
+package pl.pola_app.ui.scanner;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class FrameRoiTest {
+
+    @Test
+    public void cropCopiesTheRegion() {
+        int width = 6;
+        int height = 4;
+        byte[] frame = new byte[width * height];
+        for (int i = 0; i < frame.length; i++) {
+            frame[i] = (byte) i;
+        }
+        byte[] roi = new byte[3 * 2];
+
+        FrameRoi.crop(frame, width, 2, 1, 3, 2, roi);
+
+        assertArrayEquals(new byte[]{8, 9, 10, 14, 15, 16}, roi);
+    }
+
+    @Test
+    public void subsampleAveragesBlocks() {
+        byte[] frame = {
+                0, 2, (byte) 255, (byte) 255, 7,
+                4, 6, (byte) 255, (byte) 253, 7,
+                1, 1, 10, 20, 7,
+                1, 2, 30, 40, 7,
+                9, 9, 9, 9, 9
+        };
+        byte[] half = new byte[2 * 2];
+
+        FrameRoi.subsample(frame, 5, 5, half);
+
+        //rounded to the nearest, without sign extension of bright pixels; the odd last row and column are dropped
+        assertEquals(3, half[0]);
+        assertEquals(255, half[1] & 0xff);
+        assertEquals(1, half[2]);
+        assertEquals(25, half[3]);
+    }
+}
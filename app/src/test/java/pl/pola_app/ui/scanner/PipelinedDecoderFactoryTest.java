@@ -0,0 +1,82 @@
+package pl.pola_app.ui.scanner;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.DecodeHintType;
+import com.google.zxing.LuminanceSource;
+import com.google.zxing.PlanarYUVLuminanceSource;
+import com.google.zxing.Result;
+import com.google.zxing.WriterException;
+import com.google.zxing.oned.EAN13Writer;
+import com.journeyapps.barcodescanner.Decoder;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import pl.pola_app.metrics.ScanTimings;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Replays rendered frames through a decoder as fast as the test thread can, like a camera faster than the workers.
+ */
+public class PipelinedDecoderFactoryTest {
+    private static final String CODE = "5901234123457";
+    private static final long TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+    private PipelinedDecoderFactory factory;
+    private LuminanceSource barcodeFrame;
+
+    @Before
+    public void setUp() throws WriterException {
+        factory = new PipelinedDecoderFactory(RetailDecoderFactory.RETAIL_FORMATS, 2, new ScanTimings(),
+                new ScanGovernor());
+        byte[] luminance = RetailDecoderFactoryTest.luminance(
+                new EAN13Writer().encode(CODE, BarcodeFormat.EAN_13, 400, 100));
+        barcodeFrame = new PlanarYUVLuminanceSource(luminance, RetailDecoderFactoryTest.WIDTH,
+                RetailDecoderFactoryTest.HEIGHT, 0, 0, RetailDecoderFactoryTest.WIDTH, RetailDecoderFactoryTest.HEIGHT,
+                false);
+    }
+
+    @After
+    public void tearDown() {
+        factory.shutdown();
+    }
+
+    @Test
+    public void decodesReplayedFramesDroppingTheStaleOnes() {
+        Decoder decoder = factory.createDecoder(Collections.<DecodeHintType, Object>emptyMap());
+
+        long start = System.nanoTime();
+        int frames = 0;
+        Result result = null;
+        while (result == null && System.nanoTime() - start < TIMEOUT_NANOS) {
+            result = decoder.decode(barcodeFrame);
+            frames++;
+        }
+        long nanos = System.nanoTime() - start;
+
+        assertNotNull(result);
+        assertEquals(CODE, result.getText());
+        assertTrue(factory.getDroppedFrames() > 0);
+        System.out.println("Time to first decode: " + nanos / 1000 + " us, " + frames + " frames, "
+                + factory.getDroppedFrames() + " dropped");
+    }
+
+    @Test
+    public void returnsNothingAfterShutdown() throws InterruptedException {
+        Decoder decoder = factory.createDecoder(Collections.<DecodeHintType, Object>emptyMap());
+        factory.shutdown();
+
+        for (int i = 0; i < 100; i++) {
+            assertNull(decoder.decode(barcodeFrame));
+            Thread.sleep(5);
+        }
+    }
+}
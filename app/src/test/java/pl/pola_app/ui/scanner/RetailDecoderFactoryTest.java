@@ -0,0 +1,118 @@
+package pl.pola_app.ui.scanner;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.BinaryBitmap;
+import com.google.zxing.DecodeHintType;
+import com.google.zxing.MultiFormatReader;
+import com.google.zxing.PlanarYUVLuminanceSource;
+import com.google.zxing.ReaderException;
+import com.google.zxing.Result;
+import com.google.zxing.WriterException;
+import com.google.zxing.common.BitMatrix;
+import com.google.zxing.common.HybridBinarizer;
+import com.google.zxing.oned.EAN13Writer;
+import com.google.zxing.qrcode.QRCodeWriter;
+
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class RetailDecoderFactoryTest {
+    static final int WIDTH = 640;
+    static final int HEIGHT = 160;
+
+    private final RetailDecoderFactory factory = new RetailDecoderFactory(RetailDecoderFactory.RETAIL_FORMATS);
+
+    @Test
+    public void readsProductBarcodes() throws WriterException {
+        BitMatrix matrix = new EAN13Writer().encode("5901234123457", BarcodeFormat.EAN_13, 400, 100);
+        Result result = decode(reader(false), bitmap(matrix));
+
+        assertEquals("5901234123457", result.getText());
+        assertEquals(BarcodeFormat.EAN_13, result.getBarcodeFormat());
+    }
+
+    @Test
+    public void ignoresOtherFormats() throws WriterException {
+        BitMatrix matrix = new QRCodeWriter().encode("https://www.pola-app.pl", BarcodeFormat.QR_CODE, 150, 150);
+        assertNull(decode(reader(true), bitmap(matrix)));
+    }
+
+    @Test
+    public void benchmarkFramesWithoutBarcode() {
+        //most frames show no barcode, that's where skipping the other formats pays off
+        BinaryBitmap[] frames = new BinaryBitmap[20];
+        Random random = new Random(3);
+        for (int i = 0; i < frames.length; i++) {
+            byte[] luminance = new byte[WIDTH * HEIGHT];
+            random.nextBytes(luminance);
+            frames[i] = bitmap(luminance);
+        }
+        MultiFormatReader retail = reader(false);
+        MultiFormatReader every = new MultiFormatReader();
+        time(retail, frames);
+        time(every, frames);
+
+        long retailNanos = time(retail, frames);
+        long everyNanos = time(every, frames);
+
+        System.out.println(frames.length * 10 + " frames without a barcode, retail formats: " + retailNanos / 1000000
+                + " ms, every format: " + everyNanos / 1000000 + " ms");
+        assertTrue(retailNanos < everyNanos);
+    }
+
+    private MultiFormatReader reader(boolean tryHarder) {
+        return factory.createReader(Collections.<DecodeHintType, Object>emptyMap(), tryHarder);
+    }
+
+    private static long time(MultiFormatReader reader, BinaryBitmap[] frames) {
+        long start = System.nanoTime();
+        for (int i = 0; i < 10; i++) {
+            for (BinaryBitmap frame : frames) {
+                decode(reader, frame);
+            }
+        }
+        return System.nanoTime() - start;
+    }
+
+    private static Result decode(MultiFormatReader reader, BinaryBitmap bitmap) {
+        try {
+            return reader.decodeWithState(bitmap);
+        } catch (ReaderException e) {
+            return null;
+        } finally {
+            reader.reset();
+        }
+    }
+
+    private static BinaryBitmap bitmap(BitMatrix matrix) {
+        return bitmap(luminance(matrix));
+    }
+
+    //the matrix drawn black on white in the middle of a camera sized frame
+    static byte[] luminance(BitMatrix matrix) {
+        byte[] luminance = new byte[WIDTH * HEIGHT];
+        int left = (WIDTH - matrix.getWidth()) / 2;
+        int top = (HEIGHT - matrix.getHeight()) / 2;
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                int mx = x - left;
+                int my = y - top;
+                boolean black = mx >= 0 && my >= 0 && mx < matrix.getWidth() && my < matrix.getHeight()
+                        && matrix.get(mx, my);
+                luminance[y * WIDTH + x] = (byte) (black ? 20 : 230);
+            }
+        }
+        return luminance;
+    }
+
+    private static BinaryBitmap bitmap(byte[] luminance) {
+        return new BinaryBitmap(new HybridBinarizer(new PlanarYUVLuminanceSource(
+                luminance, WIDTH, HEIGHT, 0, 0, WIDTH, HEIGHT, false)));
+    }
+}
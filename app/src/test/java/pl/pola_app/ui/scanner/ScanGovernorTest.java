@@ -0,0 +1,115 @@
+package pl.pola_app.ui.scanner;
+
+import com.google.zxing.LuminanceSource;
+import com.google.zxing.PlanarYUVLuminanceSource;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ScanGovernorTest {
+    private static final int WIDTH = 320;
+    private static final int HEIGHT = 80;
+
+    private final ScanGovernor scanGovernor = new ScanGovernor();
+
+    @Test
+    public void skipsFramesOfTheAcceptedCode() {
+        assertTrue(scanGovernor.shouldDecode(frame(0, 0)));
+        scanGovernor.accepted("5900001000017");
+
+        assertFalse(scanGovernor.shouldDecode(frame(0, 0)));
+        //auto exposure only changes the brightness
+        assertFalse(scanGovernor.shouldDecode(frame(0, 30)));
+        assertTrue(scanGovernor.isHeld("5900001000017"));
+        assertFalse(scanGovernor.isHeld("12345670"));
+    }
+
+    @Test
+    public void decodesAgainOnceTheCameraMoves() {
+        scanGovernor.shouldDecode(frame(0, 0));
+        scanGovernor.accepted("5900001000017");
+
+        assertTrue(scanGovernor.shouldDecode(frame(7, 0)));
+        assertTrue(scanGovernor.isHeld("5900001000017"));
+        //the held code seen again moved the reference picture
+        assertFalse(scanGovernor.shouldDecode(frame(7, 0)));
+    }
+
+    @Test
+    public void releasesTheCodeAfterMovingAway() {
+        scanGovernor.shouldDecode(frame(0, 0));
+        scanGovernor.accepted("5900001000017");
+
+        for (int i = 0; i <= ScanGovernor.RELEASE_AFTER_FRAMES; i++) {
+            assertTrue(scanGovernor.shouldDecode(frame(3 + i % 5, 0)));
+        }
+        assertFalse(scanGovernor.isHeld("5900001000017"));
+        assertTrue(scanGovernor.shouldDecode(frame(0, 0)));
+    }
+
+    @Test
+    public void resetForgetsTheHeldCode() {
+        scanGovernor.shouldDecode(frame(0, 0));
+        scanGovernor.accepted("5900001000017");
+        scanGovernor.reset();
+
+        assertTrue(scanGovernor.shouldDecode(frame(0, 0)));
+        assertFalse(scanGovernor.isHeld("5900001000017"));
+    }
+
+    @Test
+    public void reportCountsDistinctCodes() {
+        scanGovernor.accepted("5900001000017");
+        scanGovernor.accepted("12345670");
+        scanGovernor.accepted("5900001000017");
+
+        assertTrue(scanGovernor.report(), scanGovernor.report().endsWith("(3, 2 distinct)"));
+    }
+
+    @Test
+    public void framesAndMainThreadCallsDontRace() throws InterruptedException {
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        final CountDownLatch done = new CountDownLatch(2);
+        for (int t = 0; t < 2; t++) {
+            final int offset = t * 4;
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        for (int i = 0; i < 2000; i++) {
+                            scanGovernor.shouldDecode(frame(offset + i % 3, 0));
+                        }
+                    } catch (Throwable e) {
+                        failure.set(e);
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            }).start();
+        }
+        while (done.getCount() > 0) {
+            scanGovernor.accepted("5900001000017");
+            scanGovernor.isHeld("5900001000017");
+        }
+        done.await();
+        assertNull(failure.get());
+    }
+
+    //vertical stripes 8 pixels wide, shifted right by phase pixels
+    private static LuminanceSource frame(int phase, int brightness) {
+        byte[] luminance = new byte[WIDTH * HEIGHT];
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                boolean dark = ((x + phase) / 8 + y / 20) % 2 == 0;
+                luminance[y * WIDTH + x] = (byte) ((dark ? 40 : 200) + brightness);
+            }
+        }
+        return new PlanarYUVLuminanceSource(luminance, WIDTH, HEIGHT, 0, 0, WIDTH, HEIGHT, false);
+    }
+}